@@ -0,0 +1,34 @@
+package io.wispforest.owo.benchmark;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.network.PacketByteBuf;
+
+/**
+ * Initializes just enough of Minecraft for the serializers of registry-backed
+ * types like {@link net.minecraft.item.ItemStack} to work, without a client
+ * or server - benchmarks must call {@link #init()} from their setup
+ */
+public final class BenchmarkBootstrap {
+
+    private static boolean initialized = false;
+
+    private BenchmarkBootstrap() {}
+
+    public static synchronized void init() {
+        if (initialized) return;
+
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        initialized = true;
+    }
+
+    /**
+     * @return A heap buffer, matching what {@link net.fabricmc.fabric.api.networking.v1.PacketByteBufs#create()} returns
+     */
+    public static PacketByteBuf buffer() {
+        return new PacketByteBuf(Unpooled.buffer());
+    }
+}
@@ -0,0 +1,75 @@
+package io.wispforest.owo.benchmark;
+
+import io.wispforest.owo.network.serialization.RecordSerializer;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of fanning one message out to many players, comparing
+ * a full encode per target with the encode-once path of
+ * {@link io.wispforest.owo.network.OwoNetChannel.ServerHandle}, which hands every
+ * target a retained duplicate of a single buffer. The sink stands in for the
+ * packet encoder, which reads each payload once and then releases it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    public int targets;
+
+    private RecordSerializer<MachineStatePacket> serializer;
+    private MachineStatePacket message;
+
+    @Setup
+    public void setup() {
+        BenchmarkBootstrap.init();
+
+        this.serializer = RecordSerializer.create(MachineStatePacket.class);
+        this.message = new MachineStatePacket(new BlockPos(120, 64, -350), new Identifier("owo", "crusher"), 4200, 0.75f,
+                List.of("iron_ore", "gold_ore", "copper_ore"));
+    }
+
+    @Benchmark
+    public void encodePerTarget(Blackhole sink) {
+        for (int i = 0; i < this.targets; i++) {
+            consume(this.encode(), sink);
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce(Blackhole sink) {
+        final var payload = this.encode();
+
+        for (int i = 0; i < this.targets; i++) {
+            consume(PacketByteBufs.retainedDuplicate(payload), sink);
+        }
+
+        payload.release();
+    }
+
+    private PacketByteBuf encode() {
+        final var buffer = PacketByteBufs.create();
+        buffer.writeVarInt(1);
+        this.serializer.write(buffer, this.message);
+        return buffer;
+    }
+
+    private static void consume(PacketByteBuf buffer, Blackhole sink) {
+        while (buffer.isReadable()) sink.consume(buffer.readByte());
+        buffer.release();
+    }
+
+    public record MachineStatePacket(BlockPos pos, Identifier machine, int energy, float progress, List<String> queue) {}
+}
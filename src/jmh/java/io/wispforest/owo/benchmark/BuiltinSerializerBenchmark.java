@@ -0,0 +1,208 @@
+package io.wispforest.owo.benchmark;
+
+import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.effect.StatusEffect;
+import net.minecraft.entity.effect.StatusEffects;
+import net.minecraft.fluid.Fluid;
+import net.minecraft.fluid.Fluids;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.particle.DustParticleEffect;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the built-in {@link PacketBufSerializer}s one type at a time
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuiltinSerializerBenchmark {
+
+    @Param({
+            "boolean", "int", "long", "float", "double", "byte", "short", "char",
+            "boolean[]", "int[]", "long[]", "float[]", "double[]", "byte[]", "short[]", "char[]",
+            "String", "UUID", "Date", "BitSet", "PacketByteBuf",
+            "BlockPos", "ChunkPos", "Identifier", "Vec3d", "Vec3f", "BlockHitResult",
+            "ItemStack", "NbtCompound", "Text", "ParticleEffect",
+            "Item", "Block", "Fluid", "StatusEffect", "Enchantment", "EntityType"
+    })
+    public String type;
+
+    private PacketBufSerializer<Object> serializer;
+    private Object value;
+
+    private PacketByteBuf writeBuffer;
+    private PacketByteBuf readBuffer;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        BenchmarkBootstrap.init();
+
+        this.value = sampleValue(this.type);
+        this.serializer = (PacketBufSerializer<Object>) PacketBufSerializer.get(sampleClass(this.type, this.value));
+
+        this.writeBuffer = BenchmarkBootstrap.buffer();
+        this.readBuffer = BenchmarkBootstrap.buffer();
+        this.serializer.serializer().accept(this.readBuffer, this.value);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.writeBuffer.release();
+        this.readBuffer.release();
+    }
+
+    @Benchmark
+    public PacketByteBuf write() {
+        this.writeBuffer.clear();
+        this.serializer.serializer().accept(this.writeBuffer, this.value);
+        return this.writeBuffer;
+    }
+
+    @Benchmark
+    public Object read() {
+        this.readBuffer.readerIndex(0);
+        return this.serializer.deserializer().apply(this.readBuffer);
+    }
+
+    private static Class<?> sampleClass(String type, Object value) {
+        return switch (type) {
+            case "boolean" -> boolean.class;
+            case "int" -> int.class;
+            case "long" -> long.class;
+            case "float" -> float.class;
+            case "double" -> double.class;
+            case "byte" -> byte.class;
+            case "short" -> short.class;
+            case "char" -> char.class;
+            case "ItemStack" -> ItemStack.class;
+            case "NbtCompound" -> NbtCompound.class;
+            case "Text" -> Text.class;
+            case "PacketByteBuf" -> PacketByteBuf.class;
+            case "ParticleEffect" -> ParticleEffect.class;
+            case "Item" -> Item.class;
+            case "Block" -> Block.class;
+            case "Fluid" -> Fluid.class;
+            case "StatusEffect" -> StatusEffect.class;
+            case "Enchantment" -> Enchantment.class;
+            case "EntityType" -> EntityType.class;
+            default -> value.getClass();
+        };
+    }
+
+    private static Object sampleValue(String type) {
+        return switch (type) {
+            case "boolean" -> true;
+            case "int" -> 300_000;
+            case "long" -> 9_000_000_000L;
+            case "float" -> 0.75f;
+            case "double" -> Math.PI;
+            case "byte" -> (byte) 42;
+            case "short" -> (short) 4200;
+            case "char" -> 'w';
+            case "int[]" -> sequence(256);
+            case "long[]" -> {
+                var array = new long[256];
+                for (int i = 0; i < array.length; i++) array[i] = i * 31L;
+                yield array;
+            }
+            case "float[]" -> {
+                var array = new float[256];
+                for (int i = 0; i < array.length; i++) array[i] = i / 3f;
+                yield array;
+            }
+            case "double[]" -> {
+                var array = new double[256];
+                for (int i = 0; i < array.length; i++) array[i] = i / 7d;
+                yield array;
+            }
+            case "boolean[]" -> {
+                var array = new boolean[256];
+                for (int i = 0; i < array.length; i++) array[i] = i % 3 == 0;
+                yield array;
+            }
+            case "byte[]" -> bytes(1024);
+            case "short[]" -> {
+                var array = new short[256];
+                for (int i = 0; i < array.length; i++) array[i] = (short) (i * 100);
+                yield array;
+            }
+            case "char[]" -> "the quick brown fox jumps over the lazy dog".toCharArray();
+            case "String" -> "the quick brown fox jumps over the lazy dog";
+            case "UUID" -> new UUID(0x0123456789abcdefL, 0xfedcba9876543210L);
+            case "Date" -> new Date(1_700_000_000_000L);
+            case "BitSet" -> BitSet.valueOf(new long[]{0xdeadbeefL, 0xcafebabeL});
+            case "PacketByteBuf" -> {
+                var buf = BenchmarkBootstrap.buffer();
+                buf.writeBytes(bytes(256));
+                yield buf;
+            }
+            case "BlockPos" -> new BlockPos(120, 64, -350);
+            case "ChunkPos" -> new ChunkPos(7, -22);
+            case "Identifier" -> new Identifier("owo", "benchmark");
+            case "Vec3d" -> new Vec3d(120.5, 64, -350.25);
+            case "Vec3f" -> new Vec3f(1.5f, 2, -3.25f);
+            case "BlockHitResult" -> new BlockHitResult(new Vec3d(120.5, 64.75, -350.25), Direction.UP, new BlockPos(120, 64, -350), false);
+            case "ItemStack" -> {
+                var stack = new ItemStack(Items.DIAMOND_PICKAXE);
+                stack.setDamage(12);
+                stack.setCustomName(Text.literal("Benchmark"));
+                yield stack;
+            }
+            case "NbtCompound" -> {
+                var nbt = new NbtCompound();
+                nbt.putString("id", "owo:benchmark");
+                nbt.putInt("count", 64);
+                nbt.putIntArray("values", sequence(32));
+                yield nbt;
+            }
+            case "Text" -> Text.literal("owo ").append(Text.translatable("block.minecraft.stone"));
+            case "ParticleEffect" -> new DustParticleEffect(new Vec3f(1, .5f, 0), 1.5f);
+            case "Item" -> Items.DIAMOND_PICKAXE;
+            case "Block" -> Blocks.STONE;
+            case "Fluid" -> Fluids.WATER;
+            case "StatusEffect" -> StatusEffects.SPEED;
+            case "Enchantment" -> Enchantments.SHARPNESS;
+            case "EntityType" -> EntityType.ZOMBIE;
+            default -> throw new IllegalArgumentException("Unknown type " + type);
+        };
+    }
+
+    private static byte[] bytes(int length) {
+        var array = new byte[length];
+        for (int i = 0; i < length; i++) array[i] = (byte) i;
+        return array;
+    }
+
+    private static int[] sequence(int length) {
+        var array = new int[length];
+        for (int i = 0; i < length; i++) array[i] = i * 1000;
+        return array;
+    }
+}
@@ -0,0 +1,96 @@
+package io.wispforest.owo.benchmark;
+
+import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import net.minecraft.network.PacketByteBuf;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a serializer created through {@link PacketBufSerializer#createDispatchedSerializer},
+ * keyed by a string like the registry-based dispatch in the testmod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchedSerializerBenchmark {
+
+    private PacketBufSerializer<Event> serializer;
+    private Event[] events;
+
+    private PacketByteBuf writeBuffer;
+    private PacketByteBuf readBuffer;
+
+    @Setup
+    public void setup() {
+        BenchmarkBootstrap.init();
+
+        final Map<String, PacketBufSerializer<? extends Event>> serializers = Map.of(
+                "spawn", PacketBufSerializer.get(SpawnEvent.class),
+                "move", PacketBufSerializer.get(MoveEvent.class),
+                "chat", PacketBufSerializer.get(ChatEvent.class)
+        );
+
+        this.serializer = PacketBufSerializer.createDispatchedSerializer(serializers::get, Event::key, PacketBufSerializer.get(String.class));
+        this.events = new Event[]{
+                new SpawnEvent(12, "zombie"),
+                new MoveEvent(12, 0.5, 64, -0.25),
+                new ChatEvent("glisco", "owo")
+        };
+
+        this.writeBuffer = BenchmarkBootstrap.buffer();
+        this.readBuffer = BenchmarkBootstrap.buffer();
+        for (var event : this.events) this.serializer.serializer().accept(this.readBuffer, event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.writeBuffer.release();
+        this.readBuffer.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public PacketByteBuf write() {
+        this.writeBuffer.clear();
+        for (var event : this.events) this.serializer.serializer().accept(this.writeBuffer, event);
+        return this.writeBuffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public void read(Blackhole blackhole) {
+        this.readBuffer.readerIndex(0);
+        for (int i = 0; i < this.events.length; i++) blackhole.consume(this.serializer.deserializer().apply(this.readBuffer));
+    }
+
+    public interface Event {
+        String key();
+    }
+
+    public record SpawnEvent(int entityId, String type) implements Event {
+        @Override
+        public String key() {
+            return "spawn";
+        }
+    }
+
+    public record MoveEvent(int entityId, double x, double y, double z) implements Event {
+        @Override
+        public String key() {
+            return "move";
+        }
+    }
+
+    public record ChatEvent(String sender, String message) implements Event {
+        @Override
+        public String key() {
+            return "chat";
+        }
+    }
+}
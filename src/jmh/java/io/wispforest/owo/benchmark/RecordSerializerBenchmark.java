@@ -0,0 +1,157 @@
+package io.wispforest.owo.benchmark;
+
+import io.wispforest.owo.network.serialization.RecordSerializer;
+import io.wispforest.owo.network.serialization.SealedPolymorphic;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RecordSerializer} on differently shaped records. Run with
+ * {@code -jvmArgs -Dowo.network.disableCompiledSerializers=true} to compare
+ * against the reflective fallback
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordSerializerBenchmark {
+
+    private Case<FlatRecord> flat;
+    private Case<NestedRecord> nested;
+    private Case<CollectionRecord> collections;
+    private Case<ShapeRecord> sealed;
+
+    @Setup
+    public void setup() {
+        BenchmarkBootstrap.init();
+
+        this.flat = new Case<>(RecordSerializer.create(FlatRecord.class),
+                new FlatRecord(4200, 9_000_000_000L, 0.75f, Math.E, true, "crusher", new Identifier("owo", "crusher"), new BlockPos(120, 64, -350)));
+
+        this.nested = new Case<>(RecordSerializer.create(NestedRecord.class),
+                new NestedRecord(new Vec3d(0.5, 64, 0.5),
+                        new Slot(0, "iron_ore", new BlockPos(1, 2, 3)),
+                        new Slot(1, "gold_ore", new BlockPos(4, 5, 6))));
+
+        this.collections = new Case<>(RecordSerializer.create(CollectionRecord.class),
+                new CollectionRecord(
+                        List.of(1, 2, 3, 5, 8, 13, 21, 34, 55, 89),
+                        Map.of("iron", 12, "gold", 4, "copper", 31, "coal", 64),
+                        List.of(new Identifier("minecraft", "stone"), new Identifier("minecraft", "dirt"), new Identifier("owo", "uwu")),
+                        Optional.of("present"),
+                        new int[]{10, 20, 30, 40, 50, 60, 70, 80}));
+
+        this.sealed = new Case<>(RecordSerializer.create(ShapeRecord.class),
+                new ShapeRecord(new Circle(2.5), new Box(1, 2, 3)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.flat.release();
+        this.nested.release();
+        this.collections.release();
+        this.sealed.release();
+    }
+
+    @Benchmark
+    public PacketByteBuf flatWrite() {
+        return this.flat.write();
+    }
+
+    @Benchmark
+    public FlatRecord flatRead() {
+        return this.flat.read();
+    }
+
+    @Benchmark
+    public PacketByteBuf nestedWrite() {
+        return this.nested.write();
+    }
+
+    @Benchmark
+    public NestedRecord nestedRead() {
+        return this.nested.read();
+    }
+
+    @Benchmark
+    public PacketByteBuf collectionsWrite() {
+        return this.collections.write();
+    }
+
+    @Benchmark
+    public CollectionRecord collectionsRead() {
+        return this.collections.read();
+    }
+
+    @Benchmark
+    public PacketByteBuf sealedWrite() {
+        return this.sealed.write();
+    }
+
+    @Benchmark
+    public ShapeRecord sealedRead() {
+        return this.sealed.read();
+    }
+
+    public record FlatRecord(int energy, long ticks, float progress, double efficiency, boolean active, String name, Identifier machine, BlockPos pos) {}
+
+    public record Slot(int index, String item, BlockPos source) {}
+
+    public record NestedRecord(Vec3d origin, Slot input, Slot output) {}
+
+    public record CollectionRecord(List<Integer> slots, Map<String, Integer> counts, List<Identifier> ids, Optional<String> label, int[] history) {}
+
+    @SealedPolymorphic
+    public sealed interface Shape permits Circle, Box {}
+
+    public record Circle(double radius) implements Shape {}
+
+    public record Box(double x, double y, double z) implements Shape {}
+
+    public record ShapeRecord(Shape primary, Shape secondary) {}
+
+    /**
+     * A serializer together with a sample message, a scratch buffer
+     * for writing and a buffer holding the encoded sample for reading
+     */
+    private static final class Case<R extends Record> {
+        private final RecordSerializer<R> serializer;
+        private final R message;
+
+        private final PacketByteBuf writeBuffer = BenchmarkBootstrap.buffer();
+        private final PacketByteBuf readBuffer = BenchmarkBootstrap.buffer();
+
+        private Case(RecordSerializer<R> serializer, R message) {
+            this.serializer = serializer;
+            this.message = message;
+
+            this.serializer.write(this.readBuffer, message);
+        }
+
+        private PacketByteBuf write() {
+            this.writeBuffer.clear();
+            this.serializer.write(this.writeBuffer, this.message);
+            return this.writeBuffer;
+        }
+
+        private R read() {
+            this.readBuffer.readerIndex(0);
+            return this.serializer.read(this.readBuffer);
+        }
+
+        private void release() {
+            this.writeBuffer.release();
+            this.readBuffer.release();
+        }
+    }
+}
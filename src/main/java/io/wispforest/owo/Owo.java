@@ -2,6 +2,7 @@ package io.wispforest.owo;
 
 import io.wispforest.owo.client.screens.ScreenInternals;
 import io.wispforest.owo.command.debug.OwoDebugCommands;
+import io.wispforest.owo.network.TrackingCache;
 import io.wispforest.owo.ops.LootOps;
 import io.wispforest.owo.text.InsertingTextContent;
 import io.wispforest.owo.ui.parsing.UIModelLoader;
@@ -52,6 +53,7 @@ public class Owo implements ModInitializer {
     public void onInitialize() {
         LootOps.registerListener();
         InsertingTextContent.init();
+        TrackingCache.init();
         ScreenInternals.init();
 
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new UIModelLoader());
@@ -0,0 +1,124 @@
+package io.wispforest.owo.command.debug;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import io.wispforest.owo.Owo;
+import io.wispforest.owo.network.MessageMetrics;
+import io.wispforest.owo.network.NetworkMetrics;
+import io.wispforest.owo.ops.TextOps;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.argument.IdentifierArgumentType;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+
+import java.util.List;
+
+import static net.minecraft.server.command.CommandManager.argument;
+import static net.minecraft.server.command.CommandManager.literal;
+
+public class NetStatsCommand {
+
+    private static final SuggestionProvider<ServerCommandSource> CHANNELS =
+            (context, builder) -> CommandSource.suggestIdentifiers(NetworkMetrics.channelIds(), builder);
+
+    private static final SimpleCommandExceptionType NO_SUCH_CHANNEL = new SimpleCommandExceptionType(Text.of("No such network channel"));
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(literal("netstats")
+                .executes(NetStatsCommand::executeAll)
+                .then(literal("reset").executes(NetStatsCommand::executeReset))
+                .then(argument("channel", IdentifierArgumentType.identifier()).suggests(CHANNELS).executes(NetStatsCommand::executeChannel)));
+    }
+
+    private static int executeAll(CommandContext<ServerCommandSource> context) {
+        final var source = context.getSource();
+
+        int messageClasses = 0;
+        for (var entry : NetworkMetrics.snapshot().entrySet()) {
+            var total = sum(entry.getValue());
+            if (total == null || (total.sentMessages() == 0 && total.receivedMessages() == 0)) continue;
+
+            sendChannel(source, entry.getKey(), total);
+            messageClasses += entry.getValue().size();
+        }
+
+        if (messageClasses == 0) {
+            source.sendFeedback(TextOps.concat(Owo.PREFIX, Text.of("No network traffic recorded yet")), false);
+        }
+
+        return messageClasses;
+    }
+
+    private static int executeChannel(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        final var source = context.getSource();
+        final var channelId = IdentifierArgumentType.getIdentifier(context, "channel");
+
+        if (!NetworkMetrics.channelIds().contains(channelId)) throw NO_SUCH_CHANNEL.create();
+
+        var snapshots = NetworkMetrics.snapshot(channelId);
+        var total = sum(snapshots);
+        if (total == null) {
+            source.sendFeedback(TextOps.concat(Owo.PREFIX, Text.of("No messages registered on this channel")), false);
+            return 0;
+        }
+
+        sendChannel(source, channelId, total);
+
+        var floodStats = NetworkMetrics.floodProtectionStats(channelId);
+        if (floodStats != null && (floodStats.rateLimitedMessages() > 0 || floodStats.budgetRejectedMessages() > 0)) {
+            source.sendFeedback(TextOps.withColor("    rejected: §" + floodStats.rateLimitedMessages() + " §rate limited, §" + floodStats.budgetRejectedMessages() + " §over task budget, §" + floodStats.kickedPlayers() + " §kicks",
+                    TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE,
+                    TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY)), false);
+        }
+
+        for (var snapshot : snapshots) {
+            source.sendFeedback(TextOps.withColor("  " + snapshot.messageClass().getSimpleName(), OwoDebugCommands.KEY_BLUE), false);
+            sendCounters(source, snapshot);
+        }
+
+        return snapshots.size();
+    }
+
+    private static int executeReset(CommandContext<ServerCommandSource> context) {
+        NetworkMetrics.reset();
+        context.getSource().sendFeedback(TextOps.concat(Owo.PREFIX, Text.of("Network metrics reset")), false);
+        return 0;
+    }
+
+    private static void sendChannel(ServerCommandSource source, Identifier channelId, MessageMetrics.Snapshot total) {
+        source.sendFeedback(TextOps.concat(Owo.PREFIX, TextOps.withColor("channel §" + channelId,
+                TextOps.color(Formatting.GRAY), OwoDebugCommands.GENERAL_PURPLE)), false);
+        sendCounters(source, total);
+    }
+
+    private static void sendCounters(ServerCommandSource source, MessageMetrics.Snapshot snapshot) {
+        source.sendFeedback(TextOps.withColor("    sent: §" + snapshot.sentMessages() + " §messages, §" + snapshot.sentBytes() + " §bytes, encode §" + micros(snapshot.encodeNanos(), snapshot.sentMessages()) + " §µs avg",
+                TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE,
+                TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY)), false);
+
+        source.sendFeedback(TextOps.withColor("    received: §" + snapshot.receivedMessages() + " §messages, §" + snapshot.receivedBytes() + " §bytes, decode §" + micros(snapshot.decodeNanos(), snapshot.receivedMessages()) + " §µs avg",
+                TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE,
+                TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY)), false);
+
+        source.sendFeedback(TextOps.withColor("    handled: §" + snapshot.handledMessages() + " §messages, handler §" + micros(snapshot.handlerNanos(), snapshot.handledMessages()) + " §µs avg",
+                TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE, TextOps.color(Formatting.GRAY), OwoDebugCommands.VALUE_BLUE,
+                TextOps.color(Formatting.GRAY)), false);
+    }
+
+    private static String micros(long nanos, long count) {
+        return count == 0 ? "0" : String.format("%.2f", nanos / (double) count / 1000d);
+    }
+
+    private static MessageMetrics.Snapshot sum(List<MessageMetrics.Snapshot> snapshots) {
+        MessageMetrics.Snapshot total = null;
+        for (var snapshot : snapshots) {
+            total = total == null ? snapshot : total.add(snapshot);
+        }
+        return total;
+    }
+}
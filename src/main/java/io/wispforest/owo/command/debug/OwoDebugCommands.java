@@ -137,6 +137,7 @@ public class OwoDebugCommands {
 
             MakeLootContainerCommand.register(dispatcher, registryAccess);
             DumpdataCommand.register(dispatcher);
+            NetStatsCommand.register(dispatcher);
             DamageCommand.register(dispatcher);
             HealCommand.register(dispatcher);
 
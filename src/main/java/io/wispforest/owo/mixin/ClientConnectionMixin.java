@@ -11,6 +11,8 @@ import java.util.Set;
 @Mixin(ClientConnection.class)
 public class ClientConnectionMixin implements OwoClientConnectionExtension {
     private Set<Identifier> channels = Collections.emptySet();
+    private int peerFeatures = 0;
+    private boolean registriesMatch = false;
 
     @Override
     public void owo$setChannelSet(Set<Identifier> channels) {
@@ -21,4 +23,24 @@ public class ClientConnectionMixin implements OwoClientConnectionExtension {
     public Set<Identifier> owo$getChannelSet() {
         return this.channels;
     }
+
+    @Override
+    public void owo$setPeerFeatures(int features) {
+        this.peerFeatures = features;
+    }
+
+    @Override
+    public int owo$getPeerFeatures() {
+        return this.peerFeatures;
+    }
+
+    @Override
+    public void owo$setRegistriesMatch(boolean registriesMatch) {
+        this.registriesMatch = registriesMatch;
+    }
+
+    @Override
+    public boolean owo$registriesMatch() {
+        return this.registriesMatch;
+    }
 }
@@ -0,0 +1,57 @@
+package io.wispforest.owo.network;
+
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.wispforest.owo.Owo;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Common executors for handlers registered with
+ * {@link OwoNetChannel#registerServerbound(Class, OwoNetChannel.ChannelHandler, Executor)}
+ * or {@link OwoNetChannel#registerClientbound(Class, OwoNetChannel.ChannelHandler, Executor)}.
+ * <p>
+ * Handlers which run off the game thread must not touch game state - use
+ * {@link OwoNetChannel.EnvironmentAccess#runOnGameThread(Runnable)} to hand
+ * results back to the game thread instead
+ */
+public final class HandlerExecutors {
+
+    private static final Executor NETTY_THREAD = Runnable::run;
+    private static final Supplier<ExecutorService> VIRTUAL_THREADS = Suppliers.memoize(HandlerExecutors::createVirtualThreadExecutor);
+
+    private HandlerExecutors() {}
+
+    /**
+     * @return An executor which runs handlers directly on the Netty event loop
+     * that received the message. Only suitable for very cheap handlers, since
+     * a slow handler stalls all other traffic of the connection
+     */
+    public static Executor nettyThread() {
+        return NETTY_THREAD;
+    }
+
+    /**
+     * @return An executor which runs every handler invocation on a new virtual
+     * thread when running on Java 21 or newer, and on a shared pool of daemon
+     * threads otherwise. Suitable for handlers which block on I/O
+     */
+    public static Executor virtualThreads() {
+        return VIRTUAL_THREADS.get();
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Owo.LOGGER.debug("Virtual threads are unavailable, network handlers will use a cached thread pool");
+            return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("owo-network-handler-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+    }
+}
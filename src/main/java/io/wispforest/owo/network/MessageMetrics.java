@@ -0,0 +1,105 @@
+package io.wispforest.owo.network;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on traffic counters for a single message class on a single
+ * {@link OwoNetChannel}. All counters are {@link LongAdder}s, so recording
+ * never blocks and stays cheap even when many threads send at once
+ *
+ * @see OwoNetChannel#messageMetrics()
+ * @see NetworkMetrics
+ */
+public final class MessageMetrics {
+
+    private final Class<? extends Record> messageClass;
+
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    private final LongAdder handledMessages = new LongAdder();
+    private final LongAdder handlerNanos = new LongAdder();
+
+    MessageMetrics(Class<? extends Record> messageClass) {
+        this.messageClass = messageClass;
+    }
+
+    void recordEncode(long nanos) {
+        this.encodeNanos.add(nanos);
+    }
+
+    void recordSent(int bytes) {
+        this.sentMessages.increment();
+        this.sentBytes.add(bytes);
+    }
+
+    void recordReceived(int bytes, long nanos) {
+        this.receivedMessages.increment();
+        this.receivedBytes.add(bytes);
+        this.decodeNanos.add(nanos);
+    }
+
+    void recordHandled(long nanos) {
+        this.handledMessages.increment();
+        this.handlerNanos.add(nanos);
+    }
+
+    /**
+     * Resets all counters to zero
+     */
+    public void reset() {
+        this.sentMessages.reset();
+        this.sentBytes.reset();
+        this.encodeNanos.reset();
+        this.receivedMessages.reset();
+        this.receivedBytes.reset();
+        this.decodeNanos.reset();
+        this.handledMessages.reset();
+        this.handlerNanos.reset();
+    }
+
+    /**
+     * @return The current values of all counters. The individual counters
+     * are read one after another, so the snapshot is not atomic
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this.messageClass,
+                this.sentMessages.sum(), this.sentBytes.sum(), this.encodeNanos.sum(),
+                this.receivedMessages.sum(), this.receivedBytes.sum(), this.decodeNanos.sum(),
+                this.handledMessages.sum(), this.handlerNanos.sum()
+        );
+    }
+
+    /**
+     * @param messageClass     The message class these counters belong to
+     * @param sentMessages     How many messages were sent, counting every target of a broadcast
+     * @param sentBytes        How many payload bytes were sent, before compression
+     * @param encodeNanos      How long encoding the sent messages took in total
+     * @param receivedMessages How many messages were received
+     * @param receivedBytes    How many payload bytes were received, after decompression
+     * @param decodeNanos      How long decoding the received messages took in total
+     * @param handledMessages  How many received messages were handled
+     * @param handlerNanos     How long executing the handlers took in total
+     */
+    public record Snapshot(Class<? extends Record> messageClass,
+                           long sentMessages, long sentBytes, long encodeNanos,
+                           long receivedMessages, long receivedBytes, long decodeNanos,
+                           long handledMessages, long handlerNanos) {
+
+        /**
+         * @return The sum of both snapshots' counters, using this snapshot's message class
+         */
+        public Snapshot add(Snapshot other) {
+            return new Snapshot(this.messageClass,
+                    this.sentMessages + other.sentMessages, this.sentBytes + other.sentBytes, this.encodeNanos + other.encodeNanos,
+                    this.receivedMessages + other.receivedMessages, this.receivedBytes + other.receivedBytes, this.decodeNanos + other.decodeNanos,
+                    this.handledMessages + other.handledMessages, this.handlerNanos + other.handlerNanos
+            );
+        }
+    }
+}
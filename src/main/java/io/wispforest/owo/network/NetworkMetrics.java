@@ -0,0 +1,65 @@
+package io.wispforest.owo.network;
+
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Query access to the {@link MessageMetrics} of all registered
+ * {@link OwoNetChannel}s
+ */
+public final class NetworkMetrics {
+
+    private NetworkMetrics() {}
+
+    /**
+     * @return The metrics of every message class of every
+     * registered channel, grouped by channel id
+     */
+    public static Map<Identifier, List<MessageMetrics.Snapshot>> snapshot() {
+        var snapshot = new TreeMap<Identifier, List<MessageMetrics.Snapshot>>();
+
+        for (var channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
+            snapshot.put(channel.packetId, channel.messageMetrics());
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * @param channelId The channel to query
+     * @return The metrics of every message class of the given
+     * channel, or an empty list if no such channel exists
+     */
+    public static List<MessageMetrics.Snapshot> snapshot(Identifier channelId) {
+        var channel = OwoNetChannel.REGISTERED_CHANNELS.get(channelId);
+        return channel == null ? List.of() : channel.messageMetrics();
+    }
+
+    /**
+     * @param channelId The channel to query
+     * @return The flood protection counters of the given
+     * channel, or {@code null} if no such channel exists
+     */
+    public static @Nullable OwoNetChannel.FloodProtectionStats floodProtectionStats(Identifier channelId) {
+        var channel = OwoNetChannel.REGISTERED_CHANNELS.get(channelId);
+        return channel == null ? null : channel.floodProtectionStats();
+    }
+
+    /**
+     * @return The ids of all registered channels
+     */
+    public static Set<Identifier> channelIds() {
+        return Collections.unmodifiableSet(OwoNetChannel.REGISTERED_CHANNELS.keySet());
+    }
+
+    /**
+     * Resets the metrics of every registered channel
+     */
+    public static void reset() {
+        for (var channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
+            channel.resetMetrics();
+        }
+    }
+}
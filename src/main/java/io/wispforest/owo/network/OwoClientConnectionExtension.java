@@ -10,4 +10,12 @@ public interface OwoClientConnectionExtension {
     void owo$setChannelSet(Set<Identifier> channels);
 
     Set<Identifier> owo$getChannelSet();
+
+    void owo$setPeerFeatures(int features);
+
+    int owo$getPeerFeatures();
+
+    void owo$setRegistriesMatch(boolean registriesMatch);
+
+    boolean owo$registriesMatch();
 }
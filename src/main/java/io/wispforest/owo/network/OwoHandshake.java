@@ -3,9 +3,11 @@ package io.wispforest.owo.network;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 import io.wispforest.owo.Owo;
+import io.wispforest.owo.network.serialization.IdentifierDictionary;
 import io.wispforest.owo.network.serialization.PacketBufSerializer;
 import io.wispforest.owo.ops.TextOps;
 import io.wispforest.owo.particles.systems.ParticleSystemController;
+import io.wispforest.owo.util.OwoFreezer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.fabric.api.client.networking.v1.ClientLoginConnectionEvents;
@@ -18,6 +20,7 @@ import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientLoginNetworkHandler;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.ClientConnection;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerLoginNetworkHandler;
@@ -27,10 +30,11 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.Pair;
 import org.jetbrains.annotations.ApiStatus;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.ToIntFunction;
@@ -42,14 +46,32 @@ public class OwoHandshake {
     private static final PacketBufSerializer<Map<Identifier, Integer>> RESPONSE_SERIALIZER =
             (PacketBufSerializer<Map<Identifier, Integer>>) (Object) PacketBufSerializer.createMapSerializer(Map.class, Identifier.class, Integer.class);
 
+    private static final int MAX_DIGEST_LENGTH = 64;
+
     private static final MutableText PREFIX = TextOps.concat(Owo.PREFIX, Text.of("§chandshake failure\n"));
     public static final Identifier CHANNEL_ID = new Identifier("owo", "handshake");
+    public static final Identifier DIGEST_CHANNEL_ID = new Identifier("owo", "handshake_digest");
     public static final Identifier OFF_CHANNEL_ID = new Identifier("owo", "handshake_off");
+    public static final Identifier OPTIONAL_CHANNEL_ID = new Identifier("owo", "handshake_optional");
+
+    /**
+     * The peer can decode payloads compressed by {@link PayloadCompression}
+     */
+    public static final int FEATURE_COMPRESSION = 1;
+
+    /**
+     * All optional protocol features this side supports. They are only
+     * exchanged on {@link #DIGEST_CHANNEL_ID}, peers which use the
+     * original handshake on {@link #CHANNEL_ID} support none of them
+     */
+    private static final int LOCAL_FEATURES = FEATURE_COMPRESSION;
 
     private static final boolean ENABLED = !Boolean.getBoolean("owo.handshake.disable");
     private static boolean HANDSHAKE_REQUIRED = false;
     private static boolean QUERY_RECEIVED = false;
 
+    private static volatile LocalHashes LOCAL_HASHES = null;
+
     // ------------
     // Registration
     // ------------
@@ -62,7 +84,13 @@ public class OwoHandshake {
 
     static {
         ServerLoginConnectionEvents.QUERY_START.register(OwoHandshake::queryStart);
+        ServerLoginNetworking.registerGlobalReceiver(OwoHandshake.DIGEST_CHANNEL_ID, OwoHandshake::syncServerDigest);
         ServerLoginNetworking.registerGlobalReceiver(OwoHandshake.CHANNEL_ID, OwoHandshake::syncServer);
+        ServerLoginNetworking.registerGlobalReceiver(OwoHandshake.OPTIONAL_CHANNEL_ID, (server, handler, understood, buf, synchronizer, responseSender) -> {});
+
+        // everything that is hashed can only be registered before the freeze,
+        // so compute the hashes once instead of on every login
+        OwoFreezer.registerFreezeCallback(() -> LOCAL_HASHES = LocalHashes.compute());
 
         if (!ENABLED) {
             ServerPlayNetworking.registerGlobalReceiver(OwoHandshake.OFF_CHANNEL_ID, (server, player, handler, buf, responseSender) -> {});
@@ -71,7 +99,9 @@ public class OwoHandshake {
         }
 
         if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
+            ClientLoginNetworking.registerGlobalReceiver(OwoHandshake.DIGEST_CHANNEL_ID, OwoHandshake::syncClientDigest);
             ClientLoginNetworking.registerGlobalReceiver(OwoHandshake.CHANNEL_ID, OwoHandshake::syncClient);
+            ClientLoginNetworking.registerGlobalReceiver(OwoHandshake.OPTIONAL_CHANNEL_ID, OwoHandshake::syncClientOptional);
             ClientPlayConnectionEvents.JOIN.register(OwoHandshake::handleJoinClient);
 
             ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> QUERY_RECEIVED = false);
@@ -83,37 +113,135 @@ public class OwoHandshake {
         return ENABLED && QUERY_RECEIVED;
     }
 
+    /**
+     * @return {@code true} if the peer on the other end of the given
+     * connection announced support for the given feature during the handshake
+     */
+    public static boolean peerSupports(ClientConnection connection, int feature) {
+        return (((OwoClientConnectionExtension) connection).owo$getPeerFeatures() & feature) != 0;
+    }
+
+    /**
+     * @return {@code true} if the peer on the other end of the given connection
+     * has the same raw ids in all registries compared during the handshake
+     * @see IdentifierDictionary#registryDigest()
+     */
+    public static boolean registriesMatch(ClientConnection connection) {
+        return ((OwoClientConnectionExtension) connection).owo$registriesMatch();
+    }
+
+    private static void readPeerCapabilities(OwoClientConnectionExtension connection, PacketByteBuf buf) {
+        connection.owo$setPeerFeatures(buf.readVarInt());
+        connection.owo$setRegistriesMatch(buf.readLong() == IdentifierDictionary.registryDigest());
+    }
+
+    private static void writeLocalCapabilities(PacketByteBuf buf) {
+        buf.writeVarInt(LOCAL_FEATURES);
+        buf.writeLong(IdentifierDictionary.registryDigest());
+    }
+
     // -------
     // Packets
     // -------
 
+    // the server first offers the digest handshake - clients which don't understand
+    // it are sent the original query on CHANNEL_ID, which exchanges the full maps
     private static void queryStart(ServerLoginNetworkHandler serverLoginNetworkHandler, MinecraftServer server, PacketSender sender, ServerLoginNetworking.LoginSynchronizer loginSynchronizer) {
         if (!ENABLED) return;
 
         var request = PacketByteBufs.create();
-        writeHashes(request, OwoNetChannel.OPTIONAL_CHANNELS, OwoHandshake::hashChannel);
-        sender.sendPacket(OwoHandshake.CHANNEL_ID, request);
+        request.writeByteArray(localHashes().digest());
+        writeLocalCapabilities(request);
+        sender.sendPacket(OwoHandshake.DIGEST_CHANNEL_ID, request);
         Owo.LOGGER.info("[Handshake] Sending channel query");
     }
 
+    @Environment(EnvType.CLIENT)
+    private static CompletableFuture<PacketByteBuf> syncClientDigest(MinecraftClient client, ClientLoginNetworkHandler clientLoginNetworkHandler, PacketByteBuf buf, Consumer<GenericFutureListener<? extends Future<? super Void>>> genericFutureListenerConsumer) {
+        Owo.LOGGER.info("[Handshake] Sending client channels");
+        QUERY_RECEIVED = true;
+
+        final var connection = (OwoClientConnectionExtension) clientLoginNetworkHandler.getConnection();
+        final var hashes = localHashes();
+
+        final byte[] serverDigest = buf.readByteArray(MAX_DIGEST_LENGTH);
+        readPeerCapabilities(connection, buf);
+
+        var response = PacketByteBufs.create();
+        response.writeByteArray(hashes.digest());
+        writeLocalCapabilities(response);
+
+        if (Arrays.equals(serverDigest, hashes.digest())) {
+            // identical digests mean the server has exactly our optional channels
+            connection.owo$setChannelSet(OwoNetChannel.OPTIONAL_CHANNELS.keySet());
+        } else {
+            // the server follows up with its optional channels on OPTIONAL_CHANNEL_ID
+            writeHashes(response, hashes);
+        }
+
+        return CompletableFuture.completedFuture(response);
+    }
+
     @Environment(EnvType.CLIENT)
     private static CompletableFuture<PacketByteBuf> syncClient(MinecraftClient client, ClientLoginNetworkHandler clientLoginNetworkHandler, PacketByteBuf buf, Consumer<GenericFutureListener<? extends Future<? super Void>>> genericFutureListenerConsumer) {
         Owo.LOGGER.info("[Handshake] Sending client channels");
         QUERY_RECEIVED = true;
 
+        final var hashes = localHashes();
+
         if (buf.readableBytes() > 0) {
             final var serverOptionalChannels = RESPONSE_SERIALIZER.deserializer().apply(buf);
-            ((OwoClientConnectionExtension) clientLoginNetworkHandler.getConnection()).owo$setChannelSet(filterOptionalServices(serverOptionalChannels, OwoNetChannel.REGISTERED_CHANNELS, OwoHandshake::hashChannel));
+            ((OwoClientConnectionExtension) clientLoginNetworkHandler.getConnection()).owo$setChannelSet(filterOptionalServices(serverOptionalChannels, hashes.allChannels()));
         }
 
         var response = PacketByteBufs.create();
-        writeHashes(response, OwoNetChannel.REQUIRED_CHANNELS, OwoHandshake::hashChannel);
-        writeHashes(response, ParticleSystemController.REGISTERED_CONTROLLERS, OwoHandshake::hashController);
-        writeHashes(response, OwoNetChannel.OPTIONAL_CHANNELS, OwoHandshake::hashChannel);
+        writeHashes(response, hashes);
 
         return CompletableFuture.completedFuture(response);
     }
 
+    @Environment(EnvType.CLIENT)
+    private static CompletableFuture<PacketByteBuf> syncClientOptional(MinecraftClient client, ClientLoginNetworkHandler clientLoginNetworkHandler, PacketByteBuf buf, Consumer<GenericFutureListener<? extends Future<? super Void>>> genericFutureListenerConsumer) {
+        final var serverOptionalChannels = RESPONSE_SERIALIZER.deserializer().apply(buf);
+        ((OwoClientConnectionExtension) clientLoginNetworkHandler.getConnection()).owo$setChannelSet(filterOptionalServices(serverOptionalChannels, localHashes().allChannels()));
+
+        return CompletableFuture.completedFuture(PacketByteBufs.empty());
+    }
+
+    private static void syncServerDigest(MinecraftServer server, ServerLoginNetworkHandler handler, boolean responded, PacketByteBuf buf, ServerLoginNetworking.LoginSynchronizer loginSynchronizer, PacketSender packetSender) {
+        final var hashes = localHashes();
+
+        if (!responded) {
+            // the client does not know the digest handshake, fall back to the original one
+            var request = PacketByteBufs.create();
+            RESPONSE_SERIALIZER.serializer().accept(request, hashes.optionalChannels());
+            packetSender.sendPacket(OwoHandshake.CHANNEL_ID, request);
+            return;
+        }
+
+        Owo.LOGGER.info("[Handshake] Receiving client channels");
+
+        final var connection = (OwoClientConnectionExtension) handler.getConnection();
+
+        final boolean digestsMatch = Arrays.equals(buf.readByteArray(MAX_DIGEST_LENGTH), hashes.digest());
+        readPeerCapabilities(connection, buf);
+
+        if (digestsMatch) {
+            connection.owo$setChannelSet(OwoNetChannel.OPTIONAL_CHANNELS.keySet());
+
+            Owo.LOGGER.info("[Handshake] Handshake completed successfully");
+            return;
+        }
+
+        if (!verifyClientHashes(handler, buf, hashes)) return;
+
+        var optionalQuery = PacketByteBufs.create();
+        RESPONSE_SERIALIZER.serializer().accept(optionalQuery, hashes.optionalChannels());
+        packetSender.sendPacket(OwoHandshake.OPTIONAL_CHANNEL_ID, optionalQuery);
+
+        Owo.LOGGER.info("[Handshake] Handshake completed successfully");
+    }
+
     private static void syncServer(MinecraftServer server, ServerLoginNetworkHandler handler, boolean responded, PacketByteBuf buf, ServerLoginNetworking.LoginSynchronizer loginSynchronizer, PacketSender packetSender) {
         Owo.LOGGER.info("[Handshake] Receiving client channels");
         if (!responded) {
@@ -124,24 +252,43 @@ public class OwoHandshake {
             return;
         }
 
+        if (!verifyClientHashes(handler, buf, localHashes())) return;
+        Owo.LOGGER.info("[Handshake] Handshake completed successfully");
+    }
+
+    /**
+     * Reads the hashes of the client's channels and particle controllers
+     * and compares them against the local ones, disconnecting the client
+     * if they don't match
+     *
+     * @return {@code true} if the client may join
+     */
+    private static boolean verifyClientHashes(ServerLoginNetworkHandler handler, PacketByteBuf buf, LocalHashes hashes) {
+        if (!buf.isReadable()) {
+            handler.disconnect(TextOps.concat(PREFIX, Text.of("incompatible client")));
+            Owo.LOGGER.info("[Handshake] Handshake failed, client did not send its channels");
+            return false;
+        }
+
         final var clientChannels = RESPONSE_SERIALIZER.deserializer().apply(buf);
         final var clientParticleControllers = RESPONSE_SERIALIZER.deserializer().apply(buf);
 
         StringBuilder disconnectMessage = new StringBuilder();
 
-        boolean isAllGood = verifyReceivedHashes("channels", clientChannels, OwoNetChannel.REQUIRED_CHANNELS, OwoHandshake::hashChannel, disconnectMessage);
-        isAllGood &= verifyReceivedHashes("controllers", clientParticleControllers, ParticleSystemController.REGISTERED_CONTROLLERS, OwoHandshake::hashController, disconnectMessage);
+        boolean isAllGood = verifyReceivedHashes("channels", clientChannels, hashes.requiredChannels(), disconnectMessage);
+        isAllGood &= verifyReceivedHashes("controllers", clientParticleControllers, hashes.controllers(), disconnectMessage);
 
         if (!isAllGood) {
             handler.disconnect(TextOps.concat(PREFIX, Text.of(disconnectMessage.toString())));
+            return false;
         }
 
-        if (buf.readableBytes() > 0) {
+        if (buf.isReadable()) {
             final var clientOptionalChannels = RESPONSE_SERIALIZER.deserializer().apply(buf);
-            ((OwoClientConnectionExtension) handler.getConnection()).owo$setChannelSet(filterOptionalServices(clientOptionalChannels, OwoNetChannel.OPTIONAL_CHANNELS, OwoHandshake::hashChannel));
+            ((OwoClientConnectionExtension) handler.getConnection()).owo$setChannelSet(filterOptionalServices(clientOptionalChannels, hashes.optionalChannels()));
         }
 
-        Owo.LOGGER.info("[Handshake] Handshake completed successfully");
+        return true;
     }
 
     @Environment(EnvType.CLIENT)
@@ -156,14 +303,14 @@ public class OwoHandshake {
     // Utility
     // -------
 
-    private static <T> Set<Identifier> filterOptionalServices(Map<Identifier, Integer> remoteMap, Map<Identifier, T> localMap, ToIntFunction<T> hashFunction) {
+    private static Set<Identifier> filterOptionalServices(Map<Identifier, Integer> remoteMap, Map<Identifier, Integer> localMap) {
         Set<Identifier> readableServices = new HashSet<>();
 
         for (var entry : remoteMap.entrySet()) {
-            var service = localMap.get(entry.getKey());
+            var localHash = localMap.get(entry.getKey());
 
-            if (service == null) continue;
-            if (hashFunction.applyAsInt(service) != entry.getValue()) continue;
+            if (localHash == null) continue;
+            if (!localHash.equals(entry.getValue())) continue;
 
             readableServices.add(entry.getKey());
         }
@@ -171,7 +318,7 @@ public class OwoHandshake {
         return readableServices;
     }
 
-    private static <T> boolean verifyReceivedHashes(String serviceNamePlural, Map<Identifier, Integer> clientMap, Map<Identifier, T> serverMap, ToIntFunction<T> hashFunction, StringBuilder disconnectMessage) {
+    private static boolean verifyReceivedHashes(String serviceNamePlural, Map<Identifier, Integer> clientMap, Map<Identifier, Integer> serverMap, StringBuilder disconnectMessage) {
         boolean isAllGood = true;
 
         if (!clientMap.keySet().equals(serverMap.keySet())) {
@@ -192,12 +339,10 @@ public class OwoHandshake {
 
         boolean hasMismatchedHashes = false;
         for (var entry : clientMap.entrySet()) {
-            var actualServiceObject = serverMap.get(entry.getKey());
-            if (actualServiceObject == null) continue;
-
-            int localHash = hashFunction.applyAsInt(actualServiceObject);
+            var localHash = serverMap.get(entry.getKey());
+            if (localHash == null) continue;
 
-            if (localHash != entry.getValue()) {
+            if (!localHash.equals(entry.getValue())) {
                 if (!hasMismatchedHashes) disconnectMessage.append(serviceNamePlural).append(" with mismatched hashes:\n");
 
                 disconnectMessage.append("§7").append(entry.getKey()).append("§r\n");
@@ -210,14 +355,20 @@ public class OwoHandshake {
         return isAllGood;
     }
 
-    private static <T> void writeHashes(PacketByteBuf buffer, Map<Identifier, T> values, ToIntFunction<T> hashFunction) {
-        Map<Identifier, Integer> hashes = new HashMap<>();
+    private static void writeHashes(PacketByteBuf buf, LocalHashes hashes) {
+        RESPONSE_SERIALIZER.serializer().accept(buf, hashes.requiredChannels());
+        RESPONSE_SERIALIZER.serializer().accept(buf, hashes.controllers());
+        RESPONSE_SERIALIZER.serializer().accept(buf, hashes.optionalChannels());
+    }
 
-        for (var entry : values.entrySet()) {
-            hashes.put(entry.getKey(), hashFunction.applyAsInt(entry.getValue()));
+    private static LocalHashes localHashes() {
+        var hashes = LOCAL_HASHES;
+        if (hashes == null) {
+            // this class was loaded after the freeze, so the callback never ran
+            hashes = LocalHashes.compute();
+            if (OwoFreezer.isFrozen()) LOCAL_HASHES = hashes;
         }
-
-        RESPONSE_SERIALIZER.serializer().accept(buffer, hashes);
+        return hashes;
     }
 
     private static Pair<Set<Identifier>, Set<Identifier>> findCollisions(Set<Identifier> first, Set<Identifier> second) {
@@ -239,6 +390,9 @@ public class OwoHandshake {
         int serializersHash = 0;
         for (var entry : channel.serializersByIndex.int2ObjectEntrySet()) {
             serializersHash += entry.getIntKey() * 31 + entry.getValue().serializer.getRecordClass().getName().hashCode();
+
+            // stateful messages use a different wire format
+            if (entry.getValue().isStateful(entry.getIntKey() < 0 ? EnvType.CLIENT : EnvType.SERVER)) serializersHash += 1;
         }
         return 31 * channel.packetId.hashCode() + serializersHash;
     }
@@ -248,6 +402,63 @@ public class OwoHandshake {
         for (var entry : controller.systemsByIndex.int2ObjectEntrySet()) {
             serializersHash += entry.getIntKey();
         }
-        return 31 * controller.channelId.hashCode() + serializersHash;
+        return 31 * (31 * controller.channelId.hashCode() + ParticleSystemController.WIRE_FORMAT_VERSION) + serializersHash;
+    }
+
+    /**
+     * The hashes of all local channels and particle controllers, along with
+     * a digest over all of them. Peers whose digests match are known to have
+     * identical hashes, so the individual maps only have to be exchanged if
+     * the digests differ
+     */
+    private record LocalHashes(Map<Identifier, Integer> requiredChannels, Map<Identifier, Integer> controllers,
+                               Map<Identifier, Integer> optionalChannels, byte[] digest) {
+
+        private static LocalHashes compute() {
+            var requiredChannels = hashAll(OwoNetChannel.REQUIRED_CHANNELS, OwoHandshake::hashChannel);
+            var controllers = hashAll(ParticleSystemController.REGISTERED_CONTROLLERS, OwoHandshake::hashController);
+            var optionalChannels = hashAll(OwoNetChannel.OPTIONAL_CHANNELS, OwoHandshake::hashChannel);
+
+            final MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+
+            updateDigest(digest, requiredChannels);
+            updateDigest(digest, controllers);
+            updateDigest(digest, optionalChannels);
+
+            return new LocalHashes(requiredChannels, controllers, optionalChannels, digest.digest());
+        }
+
+        private Map<Identifier, Integer> allChannels() {
+            var channels = new HashMap<>(this.requiredChannels);
+            channels.putAll(this.optionalChannels);
+            return channels;
+        }
+
+        private static <T> Map<Identifier, Integer> hashAll(Map<Identifier, T> values, ToIntFunction<T> hashFunction) {
+            var hashes = new TreeMap<Identifier, Integer>();
+            for (var entry : values.entrySet()) {
+                hashes.put(entry.getKey(), hashFunction.applyAsInt(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(hashes);
+        }
+
+        // the maps are sorted, so equal maps always produce the same digest
+        private static void updateDigest(MessageDigest digest, Map<Identifier, Integer> hashes) {
+            var entry = ByteBuffer.allocate(4);
+            digest.update(entry.putInt(0, hashes.size()));
+
+            for (var hash : hashes.entrySet()) {
+                digest.update(hash.getKey().toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+
+                entry.clear();
+                digest.update(entry.putInt(0, hash.getValue()));
+            }
+        }
     }
 }
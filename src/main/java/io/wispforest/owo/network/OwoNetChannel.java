@@ -1,18 +1,27 @@
 package io.wispforest.owo.network;
 
+import io.wispforest.owo.Owo;
+import io.wispforest.owo.network.serialization.IdentifierDictionary;
 import io.wispforest.owo.network.serialization.PacketBufSerializer;
 import io.wispforest.owo.network.serialization.RecordSerializer;
 import io.wispforest.owo.util.OwoFreezer;
 import io.wispforest.owo.util.ReflectionUtils;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.block.entity.BlockEntity;
@@ -24,10 +33,20 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.thread.ThreadExecutor;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -52,7 +71,20 @@ import java.util.stream.Collectors;
  * <i>to the server</i> and vice-versa.
  *
  * <p> The registered packet handlers are executed synchronously on the target environment's
- * game thread instead of Netty's event loops - there is no need to call {@code .execute(...)}
+ * game thread instead of Netty's event loops - there is no need to call {@code .execute(...)}.
+ * Handlers which don't touch game state can instead be registered with an executor of
+ * their own, see {@link HandlerExecutors}
+ *
+ * <p>Channels which send many small messages per tick can opt into sending them
+ * as one bundle packet per connection and tick with {@link #batched()}, channels which
+ * send very large messages can split them into chunks with {@link #streamAbove(int, int)}
+ *
+ * <p>Channels can opt into messages between the host of an integrated server
+ * and the server itself skipping serialization entirely, see {@link #loopback()}
+ *
+ * <p>Server handles may be obtained and used from any thread. Messages sent from
+ * a thread other than the server thread are encoded right away, but only handed
+ * to the network at the end of the current server tick
  *
  * @see PacketBufSerializer#register(Class, PacketByteBuf.PacketWriter, PacketByteBuf.PacketReader)
  * @see PacketBufSerializer#registerCollectionProvider(Class, Supplier)
@@ -62,6 +94,46 @@ public class OwoNetChannel {
     static final Map<Identifier, OwoNetChannel> REGISTERED_CHANNELS = new HashMap<>();
     static final Map<Identifier, OwoNetChannel> REQUIRED_CHANNELS = new HashMap<>();
     static final Map<Identifier, OwoNetChannel> OPTIONAL_CHANNELS = new HashMap<>();
+    static final List<OwoNetChannel> BATCHED_CHANNELS = new ArrayList<>();
+    static final List<OwoNetChannel> STREAMING_CHANNELS = new ArrayList<>();
+
+    /**
+     * Handler index 0 is never assigned in either direction,
+     * so it marks a packet that contains a bundle of messages
+     */
+    private static final int BUNDLE_MARKER = 0;
+
+    /**
+     * Handler indices are never negative on the wire, so this marks
+     * a packet whose payload was compressed by {@link PayloadCompression}
+     */
+    static final int COMPRESSED_MARKER = -1;
+
+    /**
+     * Marks a request from the peer to send the next stateful
+     * message with the given handler index in full
+     */
+    private static final int RESYNC_MARKER = -2;
+
+    /**
+     * Marks a packet which contains one chunk of a payload
+     * that is streamed by {@link PayloadStreams}
+     */
+    static final int CHUNK_MARKER = -3;
+
+    /**
+     * Marks a message which was not serialized, but handed to the peer
+     * on the local connection directly - see {@link #loopback()}
+     */
+    private static final int LOOPBACK_MARKER = -4;
+
+    /**
+     * Vanilla disconnects peers which send custom payloads larger than
+     * these, bundles are split well below them to leave room for the
+     * compression header and the worst-case expansion of deflate
+     */
+    private static final int MAX_SERVERBOUND_BUNDLE_SIZE = 32767 - 1024;
+    private static final int MAX_CLIENTBOUND_BUNDLE_SIZE = 1048576 - 1024;
 
     private final Map<Class<?>, IndexedSerializer<?>> serializersByClass = new HashMap<>();
     final Int2ObjectMap<IndexedSerializer<?>> serializersByIndex = new Int2ObjectOpenHashMap<>();
@@ -69,6 +141,10 @@ public class OwoNetChannel {
     private final List<ChannelHandler<Record, ClientAccess>> clientHandlers = new ArrayList<>();
     private final List<ChannelHandler<Record, ServerAccess>> serverHandlers = new ArrayList<>();
 
+    // a null executor means the handler runs on the game thread
+    private final List<@Nullable Executor> clientExecutors = new ArrayList<>();
+    private final List<@Nullable Executor> serverExecutors = new ArrayList<>();
+
     private final Reference2IntMap<Class<?>> deferredClientSerializers = new Reference2IntOpenHashMap<>();
 
     final Identifier packetId;
@@ -76,7 +152,57 @@ public class OwoNetChannel {
     final boolean required;
 
     private ClientHandle clientHandle = null;
-    private ServerHandle serverHandle = null;
+    private final ThreadLocal<ServerHandle> serverHandles = ThreadLocal.withInitial(() -> new ServerHandle());
+
+    // sends issued off the server thread, drained at the end of each server tick
+    private final Queue<PendingSend> pendingSends = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSendCount = new AtomicInteger();
+    private final AtomicInteger peakPendingSends = new AtomicInteger();
+    private final LongAdder queuedSends = new LongAdder();
+
+    private boolean batched = false;
+    private final Map<ServerPlayNetworkHandler, MessageBundle> serverBundles = new HashMap<>();
+    private MessageBundle clientBundle = null;
+    private final LongAdder batchedMessages = new LongAdder();
+    private final LongAdder sentBundles = new LongAdder();
+
+    private int compressionThreshold = -1;
+    private final LongAdder compressedPayloads = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private int rateLimitPerSecond = -1;
+    private int rateLimitBurst = 0;
+    private int maxPendingTasks = -1;
+    private FloodAction floodAction = FloodAction.DROP;
+    private final Map<ServerPlayNetworkHandler, FloodGuard> floodGuards = new ConcurrentHashMap<>();
+    private final LongAdder rateLimitedMessages = new LongAdder();
+    private final LongAdder budgetRejectedMessages = new LongAdder();
+    private final LongAdder kickedPlayers = new LongAdder();
+
+    // baselines of stateful messages, keyed by the connection
+    // they were sent over and received from respectively
+    private final Map<ClientConnection, Map<Class<?>, Baseline>> sentBaselines = new ConcurrentHashMap<>();
+    private final Map<ClientConnection, Map<Class<?>, Baseline>> receivedBaselines = new ConcurrentHashMap<>();
+
+    private boolean statefulServerbound = false;
+
+    private boolean compactIdentifiers = false;
+    private final Map<ClientConnection, IdentifierDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    private int streamChunkSize = -1;
+    private int streamBytesPerTick = 0;
+    private final Map<ServerPlayNetworkHandler, PayloadStreams.Outgoing> serverStreams = new ConcurrentHashMap<>();
+    private final PayloadStreams.Outgoing clientStreams = new PayloadStreams.Outgoing();
+    private final Map<ClientConnection, PayloadStreams.Incoming> incomingStreams = new ConcurrentHashMap<>();
+    private final List<StreamListener> streamListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder streamedMessages = new LongAdder();
+    private final LongAdder sentChunks = new LongAdder();
+
+    private boolean loopback = false;
+    private final LoopbackQueue serverboundLoopback = new LoopbackQueue();
+    private final LoopbackQueue clientboundLoopback = new LoopbackQueue();
+    private final LongAdder loopbackSends = new LongAdder();
 
     /**
      * Creates a new required channel with given ID. Duplicate channel
@@ -124,21 +250,54 @@ public class OwoNetChannel {
         }
 
         ServerPlayNetworking.registerGlobalReceiver(packetId, (server, player, handler, buf, responseSender) -> {
-            int handlerIndex = buf.readVarInt();
-            final Record message = serializersByIndex.get(handlerIndex).serializer.read(buf);
-            server.execute(() -> serverHandlers.get(handlerIndex).handle(message, new ServerAccess(player)));
+            final var guard = floodGuard(handler);
+            final boolean chunk = isChunk(buf);
+
+            if (guard != null && chunk && this.streamChunkSize >= 0 && !guard.tryAcquire(1)) {
+                // every chunk costs a token of its own, the stream of a rejected chunk is abandoned
+                rejectFlood(guard, 1, rateLimitedMessages);
+
+                buf.readVarInt();
+                this.incomingStreams.computeIfAbsent(handler.connection, key -> new PayloadStreams.Incoming()).reject(buf);
+                return;
+            }
+
+            if (guard != null && !chunk && !this.compactIdentifiers && !this.statefulServerbound && !this.usesLoopback(handler.connection) && !guard.admit(1)) {
+                // reject without decoding, the client is already over its limit.
+                // packets on compact channels must always be decoded, since
+                // they may define identifiers used by later packets, and so must
+                // stateful messages since later deltas build on them. Loopback
+                // markers are decoded as well, or their stored message would leak
+                rejectFlood(guard, 1, rateLimitedMessages);
+                return;
+            }
+
+            final var indices = new IntArrayList();
+            final var messages = new ArrayList<Record>();
+            decode(buf, EnvType.SERVER, handler.connection, responseSender, server, indices, messages);
+
+            if (guard != null && !guard.tryAcquire(messages.size())) {
+                rejectFlood(guard, messages.size(), rateLimitedMessages);
+                return;
+            }
+
+            dispatch(indices, messages, EnvType.SERVER, serverHandlers, serverExecutors, server, new ServerAccess(player), guard);
         });
 
         if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
             ClientPlayNetworking.registerGlobalReceiver(packetId, (client, handler, buf, responseSender) -> {
-                int handlerIndex = buf.readVarInt();
-                final Record message = serializersByIndex.get(-handlerIndex).serializer.read(buf);
-                client.execute(() -> clientHandlers.get(handlerIndex).handle(message, new ClientAccess(handler)));
+                final var indices = new IntArrayList();
+                final var messages = new ArrayList<Record>();
+                decode(buf, EnvType.CLIENT, handler.getConnection(), responseSender, client, indices, messages);
+
+                dispatch(indices, messages, EnvType.CLIENT, clientHandlers, clientExecutors, client, new ClientAccess(handler), null);
             });
         }
 
         clientHandlers.add(null);
         serverHandlers.add(null);
+        clientExecutors.add(null);
+        serverExecutors.add(null);
         REGISTERED_CHANNELS.put(id, this);
 
         if (required) {
@@ -160,19 +319,64 @@ public class OwoNetChannel {
      * @see #serverHandle(ServerWorld, BlockPos)
      * @see PacketBufSerializer#register(Class, PacketByteBuf.PacketWriter, PacketByteBuf.PacketReader)
      */
-    @SuppressWarnings("unchecked")
     public <R extends Record> void registerClientbound(Class<R> messageClass, ChannelHandler<R, ClientAccess> handler) {
+        this.addClientHandler(messageClass, handler, null, false);
+    }
+
+    /**
+     * Registers a handler <i>on the client</i> for the specified message class
+     * which is run on the given executor instead of the client thread. Use this
+     * for handlers which don't touch game state, like lookups or logging, so they
+     * don't have to wait for the next client tick
+     *
+     * @param messageClass The type of packet data to send and serialize
+     * @param handler      The handler that will receive the deserialized
+     * @param executor     The executor to run the handler on
+     * @see HandlerExecutors
+     * @see EnvironmentAccess#runOnGameThread(Runnable)
+     */
+    public <R extends Record> void registerClientbound(Class<R> messageClass, ChannelHandler<R, ClientAccess> handler, Executor executor) {
+        this.addClientHandler(messageClass, handler, Objects.requireNonNull(executor, "executor"), false);
+    }
+
+    /**
+     * Registers a stateful handler <i>on the client</i> for the specified message class.
+     * For every connection, the last message of this class that was sent is remembered
+     * and following messages only transfer the components which changed. The client
+     * rebuilds the full record from its own copy of the previous one, so the handler
+     * always receives complete messages
+     * <p>
+     * This is meant for records which are resent frequently with mostly
+     * unchanged components, like machine or boss state. Components are compared
+     * with {@link Objects#deepEquals(Object, Object)}, and records may have at
+     * most 64 components. Should the client ever lack the previous message,
+     * it discards the update and requests the next one to be sent in full
+     * <p>
+     * Stateful messages to the same connection must always be sent from the same thread
+     *
+     * @param messageClass The type of packet data to send and serialize
+     * @param handler      The handler that will receive the deserialized
+     */
+    public <R extends Record> void registerClientboundStateful(Class<R> messageClass, ChannelHandler<R, ClientAccess> handler) {
+        this.addClientHandler(messageClass, handler, null, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Record> void addClientHandler(Class<R> messageClass, ChannelHandler<R, ClientAccess> handler, @Nullable Executor executor, boolean stateful) {
         int deferredIndex = deferredClientSerializers.removeInt(messageClass);
         if (deferredIndex != -1) {
             OwoFreezer.checkRegister("Network handlers");
+            if (stateful) throw new NetworkException("Message class '" + messageClass.getName() + "' was registered as deferred and cannot be made stateful");
 
             this.clientHandlers.set(deferredIndex, (ChannelHandler<Record, ClientAccess>) handler);
+            this.clientExecutors.set(deferredIndex, executor);
             return;
         }
 
         int index = this.clientHandlers.size();
-        this.createSerializer(messageClass, index, EnvType.CLIENT);
+        this.createSerializer(messageClass, index, EnvType.CLIENT, stateful);
         this.clientHandlers.add((ChannelHandler<Record, ClientAccess>) handler);
+        this.clientExecutors.add(executor);
     }
 
     /**
@@ -188,8 +392,9 @@ public class OwoNetChannel {
      */
     public <R extends Record> void registerClientboundDeferred(Class<R> messageClass) {
         int index = this.clientHandlers.size();
-        this.createSerializer(messageClass, index, EnvType.CLIENT);
+        this.createSerializer(messageClass, index, EnvType.CLIENT, false);
         this.clientHandlers.add(null);
+        this.clientExecutors.add(null);
 
         this.deferredClientSerializers.put(messageClass, index);
     }
@@ -204,11 +409,329 @@ public class OwoNetChannel {
      * @see #clientHandle()
      * @see PacketBufSerializer#register(Class, PacketByteBuf.PacketWriter, PacketByteBuf.PacketReader)
      */
-    @SuppressWarnings("unchecked")
     public <R extends Record> void registerServerbound(Class<R> messageClass, ChannelHandler<R, ServerAccess> handler) {
+        this.addServerHandler(messageClass, handler, null, false);
+    }
+
+    /**
+     * Registers a handler <i>on the server</i> for the specified message class
+     * which is run on the given executor instead of the server thread. Use this
+     * for handlers which don't touch game state, like lookups or logging, so they
+     * don't have to wait for the next server tick
+     *
+     * @param messageClass The type of packet data to send and serialize
+     * @param handler      The handler that will receive the deserialized
+     * @param executor     The executor to run the handler on
+     * @see HandlerExecutors
+     * @see EnvironmentAccess#runOnGameThread(Runnable)
+     */
+    public <R extends Record> void registerServerbound(Class<R> messageClass, ChannelHandler<R, ServerAccess> handler, Executor executor) {
+        this.addServerHandler(messageClass, handler, Objects.requireNonNull(executor, "executor"), false);
+    }
+
+    /**
+     * Registers a stateful handler <i>on the server</i> for the specified message class.
+     * The same rules as for {@link #registerClientboundStateful(Class, ChannelHandler)} apply
+     *
+     * @param messageClass The type of packet data to send and serialize
+     * @param handler      The handler that will receive the deserialized
+     * @see #registerClientboundStateful(Class, ChannelHandler)
+     */
+    public <R extends Record> void registerServerboundStateful(Class<R> messageClass, ChannelHandler<R, ServerAccess> handler) {
+        this.addServerHandler(messageClass, handler, null, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Record> void addServerHandler(Class<R> messageClass, ChannelHandler<R, ServerAccess> handler, @Nullable Executor executor, boolean stateful) {
         int index = this.serverHandlers.size();
-        this.createSerializer(messageClass, index, EnvType.SERVER);
+        this.createSerializer(messageClass, index, EnvType.SERVER, stateful);
         this.serverHandlers.add((ChannelHandler<Record, ServerAccess>) handler);
+        this.serverExecutors.add(executor);
+
+        if (stateful) this.statefulServerbound = true;
+    }
+
+    /**
+     * Enables message batching on this channel. Instead of sending a separate
+     * packet for every message, all messages sent to the same connection during
+     * a server tick or client tick are queued and sent as a single bundle packet
+     * once the tick ends. The receiver dispatches the bundled messages to their
+     * handlers in the order they were sent. Should the messages of a tick not fit
+     * into a single packet, they are split across as many bundles as needed
+     * <p>
+     * This trades up to one tick of latency for far fewer packets and flushes,
+     * which is worth it for channels that send many small messages per tick.
+     * Messages sent from threads other than the game thread bypass the queue
+     *
+     * @return This channel, for chaining
+     * @see #batchingStats()
+     */
+    public OwoNetChannel batched() {
+        OwoFreezer.checkRegister("Network channel options");
+
+        if (!this.batched) {
+            this.batched = true;
+            BATCHED_CHANNELS.add(this);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return A snapshot of how many messages this channel has batched
+     * and how many bundle packets were sent for them
+     * @see #batched()
+     */
+    public BatchingStats batchingStats() {
+        return new BatchingStats(this.batchedMessages.sum(), this.sentBundles.sum());
+    }
+
+    /**
+     * Enables payload compression on this channel. Every packet whose
+     * encoded payload is larger than the given threshold is compressed
+     * before sending, which is worth it for channels that carry large
+     * payloads like NBT blobs or big maps. Bundles created by {@link #batched()}
+     * are compressed as a whole
+     * <p>
+     * Compression is only used towards peers that announced support for it
+     * during the handshake and never on local connections
+     *
+     * @param thresholdBytes The payload size in bytes above which to compress
+     * @return This channel, for chaining
+     * @see #compressionStats()
+     */
+    public OwoNetChannel compressAbove(int thresholdBytes) {
+        OwoFreezer.checkRegister("Network channel options");
+        if (thresholdBytes < 0) throw new IllegalArgumentException("Compression threshold must not be negative");
+
+        this.compressionThreshold = thresholdBytes;
+        return this;
+    }
+
+    /**
+     * @return A snapshot of how many payloads this channel
+     * compressed and how much space that saved
+     * @see #compressAbove(int)
+     */
+    public CompressionStats compressionStats() {
+        return new CompressionStats(this.compressedPayloads.sum(), this.uncompressedBytes.sum(), this.compressedBytes.sum());
+    }
+
+    /**
+     * Limits how many serverbound messages every player may send on this
+     * channel, using a token bucket which refills at the given rate and holds
+     * at most {@code burst} tokens. Every message in a packet, including each
+     * message of a bundle, consumes one token - and so does every chunk of a
+     * streamed message. Streams with a rejected chunk are dropped entirely
+     * <p>
+     * Messages that exceed the limit are dropped or get the sending player
+     * kicked, depending on {@link #onFlood(FloodAction)}
+     *
+     * @param messagesPerSecond The sustained amount of messages a player may send per second
+     * @param burst             The amount of messages a player may send at once
+     * @return This channel, for chaining
+     * @see #floodProtectionStats()
+     */
+    public OwoNetChannel rateLimit(int messagesPerSecond, int burst) {
+        OwoFreezer.checkRegister("Network channel options");
+        if (messagesPerSecond <= 0) throw new IllegalArgumentException("Rate limit must be positive");
+        if (burst <= 0) throw new IllegalArgumentException("Rate limit burst must be positive");
+
+        this.rateLimitPerSecond = messagesPerSecond;
+        this.rateLimitBurst = burst;
+        return this;
+    }
+
+    /**
+     * Limits how many game thread tasks created by serverbound messages
+     * on this channel may be waiting for execution per player at once.
+     * Packets that would exceed the budget are dropped or get the sending
+     * player kicked, depending on {@link #onFlood(FloodAction)}
+     *
+     * @param maxPendingTasks The maximum amount of pending tasks per player
+     * @return This channel, for chaining
+     * @see #floodProtectionStats()
+     */
+    public OwoNetChannel maxPendingTasks(int maxPendingTasks) {
+        OwoFreezer.checkRegister("Network channel options");
+        if (maxPendingTasks <= 0) throw new IllegalArgumentException("Pending task budget must be positive");
+
+        this.maxPendingTasks = maxPendingTasks;
+        return this;
+    }
+
+    /**
+     * Sets what happens to players which exceed the limits set through
+     * {@link #rateLimit(int, int)} or {@link #maxPendingTasks(int)}. By
+     * default, messages over the limit are dropped
+     *
+     * @param action The action to take
+     * @return This channel, for chaining
+     */
+    public OwoNetChannel onFlood(FloodAction action) {
+        OwoFreezer.checkRegister("Network channel options");
+
+        this.floodAction = Objects.requireNonNull(action, "action");
+        return this;
+    }
+
+    /**
+     * @return A snapshot of how many serverbound messages this
+     * channel rejected and how many players it kicked for it
+     * @see #rateLimit(int, int)
+     * @see #maxPendingTasks(int)
+     */
+    public FloodProtectionStats floodProtectionStats() {
+        return new FloodProtectionStats(this.rateLimitedMessages.sum(), this.budgetRejectedMessages.sum(), this.kickedPlayers.sum());
+    }
+
+    /**
+     * Enables per-connection identifier dictionaries on this channel. The
+     * first time an {@link Identifier} is sent over a connection, it is
+     * sent in full along with a short id - after that, only the id is sent.
+     * Entries of the registries created through {@link PacketBufSerializer#createRegistrySerializer(net.minecraft.util.registry.Registry)}
+     * use the dictionary as well, or are sent as raw ids if the handshake
+     * determined that both sides have identical registries
+     * <p>
+     * Every message on such a channel is encoded separately for every
+     * connection, so this is worth it for channels whose messages contain
+     * many identifiers or registry entries and are sent to few players
+     *
+     * @return This channel, for chaining
+     * @see IdentifierDictionary
+     */
+    public OwoNetChannel compactIdentifiers() {
+        OwoFreezer.checkRegister("Network channel options");
+
+        this.compactIdentifiers = true;
+        return this;
+    }
+
+    /**
+     * Enables streaming of large messages on this channel. Messages whose
+     * encoded (and possibly compressed) payload is larger than {@code chunkBytes}
+     * are split into chunks of at most that size, which are sent at the end of
+     * every tick at a rate of roughly {@code bytesPerTick} per connection. The
+     * receiver reassembles the chunks and dispatches the message to its handler
+     * once all of them have arrived
+     * <p>
+     * Streamed messages therefore arrive after messages which were sent later
+     * but are small enough to be sent normally. Stateful messages are never
+     * streamed, as their deltas rely on being received in order
+     *
+     * @param chunkBytes   The payload size above which messages are streamed and the
+     *                     maximum size of a chunk, at most {@value PayloadStreams#MAX_CHUNK_SIZE}
+     * @param bytesPerTick The amount of streamed bytes to send per connection and tick
+     * @return This channel, for chaining
+     * @see #addStreamListener(StreamListener)
+     * @see #streamingStats()
+     */
+    public OwoNetChannel streamAbove(int chunkBytes, int bytesPerTick) {
+        OwoFreezer.checkRegister("Network channel options");
+        if (chunkBytes <= 0 || chunkBytes > PayloadStreams.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + PayloadStreams.MAX_CHUNK_SIZE + " bytes");
+        }
+        if (bytesPerTick <= 0) throw new IllegalArgumentException("Stream budget must be positive");
+
+        if (this.streamChunkSize < 0) STREAMING_CHANNELS.add(this);
+
+        this.streamChunkSize = chunkBytes;
+        this.streamBytesPerTick = bytesPerTick;
+        return this;
+    }
+
+    /**
+     * Registers a listener which is notified about the progress of messages
+     * streamed over this channel, in both directions. Listeners are invoked
+     * on the game thread of the side they were registered on and may be
+     * added and removed at any time
+     *
+     * @param listener The listener to add
+     * @see #streamAbove(int, int)
+     */
+    public void addStreamListener(StreamListener listener) {
+        this.streamListeners.add(listener);
+    }
+
+    /**
+     * @param listener The listener to remove, previously
+     *                 added with {@link #addStreamListener(StreamListener)}
+     */
+    public void removeStreamListener(StreamListener listener) {
+        this.streamListeners.remove(listener);
+    }
+
+    /**
+     * @return A snapshot of how many messages this channel
+     * streamed and how many chunks were sent for them
+     * @see #streamAbove(int, int)
+     */
+    public StreamingStats streamingStats() {
+        return new StreamingStats(this.streamedMessages.sum(), this.sentChunks.sum());
+    }
+
+    /**
+     * Stops serializing messages between the host of an integrated server and
+     * the server itself - the peer's handler receives a copy of the record
+     * instance instead, in which mutable components like item stacks and NBT
+     * are copied and immutable ones are shared. Only a tiny marker packet
+     * travels through the connection, so loopback messages are still
+     * received in order with all other packets
+     * <p>
+     * Only enable this if every message on the channel survives being copied
+     * by {@link RecordSerializer#copy(Record)} - handlers which depend on messages
+     * actually being serialized, for example because they use custom serializers
+     * with side effects, must not use it
+     *
+     * @return This channel, for chaining
+     * @see RecordSerializer#copy(Record)
+     */
+    public OwoNetChannel loopback() {
+        OwoFreezer.checkRegister("Network channel options");
+
+        this.loopback = true;
+        return this;
+    }
+
+    /**
+     * @return How many messages this channel handed to the
+     * peer on the local connection without serializing them
+     * @see #loopback()
+     */
+    public long loopbackSends() {
+        return this.loopbackSends.sum();
+    }
+
+    /**
+     * Traffic metrics are always collected, separately
+     * for every message class registered on this channel
+     *
+     * @return A snapshot of the metrics of every message class on this channel
+     * @see NetworkMetrics
+     */
+    public List<MessageMetrics.Snapshot> messageMetrics() {
+        var snapshots = new ArrayList<MessageMetrics.Snapshot>(this.serializersByClass.size());
+        for (var serializer : this.serializersByClass.values()) {
+            snapshots.add(serializer.metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Resets the metrics of every message class on this channel
+     */
+    public void resetMetrics() {
+        for (var serializer : this.serializersByClass.values()) {
+            serializer.metrics.reset();
+        }
+    }
+
+    /**
+     * @return A snapshot of the queue which holds messages sent from
+     * threads other than the server thread until the end of the tick
+     */
+    public OffThreadSendStats offThreadSendStats() {
+        return new OffThreadSendStats(this.pendingSendCount.get(), this.peakPendingSends.get(), this.queuedSends.sum());
     }
 
     public boolean canSendToPlayer(ServerPlayerEntity player) {
@@ -254,16 +777,15 @@ public class OwoNetChannel {
      * Obtains a server handle used to send packets
      * <i>to all players on the given server</i>
      * <p>
-     * <b>This handle will be reused - do not retain references</b>
+     * <b>This handle will be reused by the calling thread - do not retain references</b>
      *
      * @param server The server to target
      * @return A server handle configured for sending packets
      * to all players on the given server
      */
     public ServerHandle serverHandle(MinecraftServer server) {
-        var handle = getServerHandle();
-        handle.targets = PlayerLookup.all(server);
-        return handle;
+        if (!server.isOnThread()) return getServerHandle().select(() -> PlayerLookup.all(server));
+        return getServerHandle().select(PlayerLookup.all(server));
     }
 
     /**
@@ -271,7 +793,7 @@ public class OwoNetChannel {
      * <i>to all given players</i>. Use {@link PlayerLookup} to obtain
      * the required collections
      * <p>
-     * <b>This handle will be reused - do not retain references</b>
+     * <b>This handle will be reused by the calling thread - do not retain references</b>
      *
      * @param targets The players to target
      * @return A server handle configured for sending packets
@@ -279,16 +801,14 @@ public class OwoNetChannel {
      * @see PlayerLookup
      */
     public ServerHandle serverHandle(Collection<ServerPlayerEntity> targets) {
-        var handle = getServerHandle();
-        handle.targets = targets;
-        return handle;
+        return getServerHandle().select(targets);
     }
 
     /**
      * Obtains a server handle used to send packets
      * <i>to the given player only</i>
      * <p>
-     * <b>This handle will be reused - do not retain references</b>
+     * <b>This handle will be reused by the calling thread - do not retain references</b>
      *
      * @param player The player to target
      * @return A server handle configured for sending packets
@@ -297,16 +817,14 @@ public class OwoNetChannel {
     public ServerHandle serverHandle(PlayerEntity player) {
         if (!(player instanceof ServerPlayerEntity serverPlayer)) throw new NetworkException("'player' must be a 'ServerPlayerEntity'");
 
-        var handle = getServerHandle();
-        handle.targets = Collections.singleton(serverPlayer);
-        return handle;
+        return getServerHandle().select(Collections.singleton(serverPlayer));
     }
 
     /**
      * Obtains a server handle used to send packets
      * <i>to all players tracking the given block entity</i>
      * <p>
-     * <b>This handle will be reused - do not retain references</b>
+     * <b>This handle will be reused by the calling thread - do not retain references</b>
      *
      * @param entity The block entity to look up trackers for
      * @return A server handle configured for sending packets
@@ -314,14 +832,16 @@ public class OwoNetChannel {
      */
     public ServerHandle serverHandle(BlockEntity entity) {
         if (entity.getWorld().isClient) throw new NetworkException("Server handle cannot be obtained on the client");
-        return serverHandle(PlayerLookup.tracking(entity));
+
+        if (!entity.getWorld().getServer().isOnThread()) return getServerHandle().select(() -> TrackingCache.tracking(entity));
+        return serverHandle(TrackingCache.tracking(entity));
     }
 
     /**
      * Obtains a server handle used to send packets <i>to all
      * players tracking the given position in the given world</i>
      * <p>
-     * <b>This handle will be reused - do not retain references</b>
+     * <b>This handle will be reused by the calling thread - do not retain references</b>
      *
      * @param world The world to look up players in
      * @param pos   The position to look up trackers for
@@ -329,32 +849,42 @@ public class OwoNetChannel {
      * to all players tracking the given position in the given world
      */
     public ServerHandle serverHandle(ServerWorld world, BlockPos pos) {
-        return serverHandle(PlayerLookup.tracking(world, pos));
+        if (!world.getServer().isOnThread()) return getServerHandle().select(() -> TrackingCache.tracking(world, pos));
+        return serverHandle(TrackingCache.tracking(world, pos));
     }
 
     private ServerHandle getServerHandle() {
-        if (this.serverHandle == null) this.serverHandle = new ServerHandle();
-        return serverHandle;
+        return this.serverHandles.get();
     }
 
-    private <R extends Record> void createSerializer(Class<R> messageClass, int handlerIndex, EnvType target) {
+    private <R extends Record> void createSerializer(Class<R> messageClass, int handlerIndex, EnvType target, boolean stateful) {
         OwoFreezer.checkRegister("Network handlers");
 
+        if (stateful && messageClass.getRecordComponents().length > 64) {
+            throw new IllegalStateException("Stateful message class '" + messageClass.getName() + "' has more than 64 components");
+        }
+
         var serializer = serializersByClass.get(messageClass);
         if (serializer == null) {
             final var indexedSerializer = IndexedSerializer.create(RecordSerializer.create(messageClass), handlerIndex, target);
+            indexedSerializer.setStateful(stateful, target);
             serializersByClass.put(messageClass, indexedSerializer);
             serializersByIndex.put(target == EnvType.CLIENT ? -handlerIndex : handlerIndex, indexedSerializer);
         } else if (serializer.handlerIndex(target) == -1) {
             serializer.setHandlerIndex(handlerIndex, target);
+            serializer.setStateful(stateful, target);
             serializersByIndex.put(target == EnvType.CLIENT ? -handlerIndex : handlerIndex, serializer);
         } else {
             throw new IllegalStateException("Message class '" + messageClass.getName() + "' is already registered for target environment " + target);
         }
     }
 
-    @SuppressWarnings("unchecked")
     private <R extends Record> PacketByteBuf encode(R message, EnvType target) {
+        return this.encode(message, target, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Record> PacketByteBuf encode(R message, EnvType target, @Nullable ClientConnection connection) {
         var buffer = PacketByteBufs.create();
 
         final var messageClass = message.getClass();
@@ -368,99 +898,741 @@ public class OwoNetChannel {
             throw new NetworkException("Message class '" + messageClass + "' has not handler registered for target environment " + target);
         }
 
+        final long start = System.nanoTime();
         buffer.writeVarInt(serializer.handlerIndex(target));
-        serializer.serializer.write(buffer, message);
 
-        return buffer;
-    }
+        if (serializer.isStateful(target) && connection == null) {
+            throw new NetworkException("Stateful message class '" + messageClass + "' requires a connection to encode");
+        }
 
-    public class ClientHandle {
+        if (this.compactIdentifiers) {
+            if (connection == null) throw new NetworkException("Channel " + this.packetId + " uses compact identifiers and requires a connection to encode");
 
-        /**
-         * Sends the given message to the server
-         *
-         * @param message The message to send
-         * @see #send(Record[])
-         */
-        public <R extends Record> void send(R message) {
-            ClientPlayNetworking.send(OwoNetChannel.this.packetId, OwoNetChannel.this.encode(message, EnvType.SERVER));
-        }
+            final var dictionary = this.dictionaryFor(connection);
+            final int mark = dictionary.mark();
+            final int headerEnd = buffer.writerIndex();
 
-        /**
-         * Sends the given messages to the server
-         *
-         * @param messages The messages to send
-         */
-        @SafeVarargs
-        public final <R extends Record> void send(R... messages) {
-            for (R message : messages) send(message);
-        }
-    }
+            this.writeWithDictionary(buffer, serializer, message, target, connection, dictionary, true);
 
-    public class ServerHandle {
+            // streamed messages may arrive after ones that were sent later,
+            // so they must not define identifiers those could refer to
+            if (this.exceedsChunkSize(buffer) && !serializer.isStateful(target)) {
+                dictionary.rollback(mark);
+                buffer.writerIndex(headerEnd);
 
-        private Collection<ServerPlayerEntity> targets = Collections.emptySet();
+                this.writeWithDictionary(buffer, serializer, message, target, connection, dictionary, false);
+            }
+        } else {
+            this.writeMessage(buffer, serializer, message, target, connection);
+        }
 
-        /**
-         * Sends the given message to the configured target(s)
-         * <b>Resets the target(s) after sending - this cannot be used
-         * for multiple messages on the same handle</b>
-         *
-         * @param message The message to send
-         * @see #send(Record[])
-         */
-        public <R extends Record> void send(R message) {
-            this.targets.forEach(player -> ServerPlayNetworking.send(player, OwoNetChannel.this.packetId, OwoNetChannel.this.encode(message, EnvType.CLIENT)));
-            this.targets = null;
+        serializer.metrics.recordEncode(System.nanoTime() - start);
+        return buffer;
+    }
+
+    private <R extends Record> void writeMessage(PacketByteBuf buffer, IndexedSerializer<R> serializer, R message, EnvType target, @Nullable ClientConnection connection) {
+        if (serializer.isStateful(target)) {
+            this.writeStateful(buffer, serializer.serializer, message, connection);
+        } else {
+            serializer.serializer.write(buffer, message);
         }
+    }
 
-        /**
-         * Sends the given messages to the configured target(s)
-         * <b>Resets the target(s) after sending - this cannot be used
-         * multiple times on the same handle</b>
-         *
-         * @param messages The messages to send
-         */
-        @SafeVarargs
-        public final <R extends Record> void send(R... messages) {
-            this.targets.forEach(player -> {
-                for (R message : messages) {
-                    ServerPlayNetworking.send(player, OwoNetChannel.this.packetId, OwoNetChannel.this.encode(message, EnvType.CLIENT));
-                }
-            });
-            this.targets = null;
+    private <R extends Record> void writeWithDictionary(PacketByteBuf buffer, IndexedSerializer<R> serializer, R message, EnvType target, ClientConnection connection,
+                                                        IdentifierDictionary dictionary, boolean allowDefinitions) {
+        IdentifierDictionary.enter(dictionary, OwoHandshake.registriesMatch(connection), allowDefinitions);
+        try {
+            this.writeMessage(buffer, serializer, message, target, connection);
+        } finally {
+            IdentifierDictionary.exit();
         }
     }
 
-    public interface ChannelHandler<R extends Record, E extends EnvironmentAccess<?, ?, ?>> {
+    private MessageMetrics metricsFor(Class<?> messageClass) {
+        return this.serializersByClass.get(messageClass).metrics;
+    }
 
-        /**
-         * Executed on the game thread to handle the incoming
-         * message - this can safely modify game state
-         *
-         * @param message The message that was received
-         * @param access  The {@link EnvironmentAccess} used to obtain references
-         *                to the execution environment
-         */
-        void handle(R message, E access);
+    private MessageMetrics metricsFor(int handlerIndex, EnvType target) {
+        return this.serializersByIndex.get(target == EnvType.CLIENT ? -handlerIndex : handlerIndex).metrics;
     }
 
     /**
-     * A simple wrapper that provides access to the environment a packet
-     * is being received / message is being handled in
-     *
-     * @param <P> The type of player to receive the packet
-     * @param <R> The runtime that the packet is being received in
-     * @param <N> The network handler that received the packet
+     * @return {@code true} if the given message class must be encoded separately for
+     * every connection, either because it is stateful or this channel uses compact identifiers
      */
-    public interface EnvironmentAccess<P extends PlayerEntity, R, N> {
+    private boolean encodesPerConnection(Class<?> messageClass, EnvType target) {
+        if (this.compactIdentifiers) return true;
 
-        /**
-         * @return The player that received the packet
-         */
-        P player();
+        var serializer = this.serializersByClass.get(messageClass);
+        return serializer != null && serializer.isStateful(target);
+    }
 
-        /**
+    private IdentifierDictionary dictionaryFor(ClientConnection connection) {
+        return this.dictionaries.computeIfAbsent(connection, key -> new IdentifierDictionary());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Record> void writeStateful(PacketByteBuf buffer, RecordSerializer<R> serializer, R message, ClientConnection connection) {
+        var baselines = this.sentBaselines.computeIfAbsent(connection, key -> new ConcurrentHashMap<>());
+        var baseline = baselines.get(message.getClass());
+
+        long mask = serializer.diff(baseline == null ? null : (R) baseline.record(), message);
+
+        // every message advances the sequence, so the receiver notices any message it missed
+        int sequence = baseline == null ? 0 : (baseline.sequence() + 1) & 0xFFFF;
+
+        buffer.writeShort(sequence);
+        buffer.writeVarLong(mask);
+        serializer.writeComponents(buffer, message, mask);
+
+        baselines.put(message.getClass(), new Baseline(message, sequence));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Record> @Nullable R readStateful(PacketByteBuf buffer, IndexedSerializer<R> serializer, int handlerIndex, ClientConnection connection, PacketSender responseSender) {
+        final var recordSerializer = serializer.serializer;
+
+        int sequence = buffer.readUnsignedShort();
+        long mask = buffer.readVarLong();
+
+        var baselines = this.receivedBaselines.computeIfAbsent(connection, key -> new ConcurrentHashMap<>());
+        var baseline = baselines.get(recordSerializer.getRecordClass());
+
+        if (mask != recordSerializer.fullMask() && (baseline == null || ((baseline.sequence() + 1) & 0xFFFF) != sequence)) {
+            // consume the components, then ask for the next message to be complete. The
+            // baseline is dropped, so all deltas until then are discarded as well
+            recordSerializer.readComponents(buffer, mask, null);
+            baselines.remove(recordSerializer.getRecordClass());
+
+            var request = PacketByteBufs.create();
+            request.writeVarInt(RESYNC_MARKER);
+            request.writeVarInt(handlerIndex);
+            responseSender.sendPacket(this.packetId, request);
+
+            return null;
+        }
+
+        var message = recordSerializer.readComponents(buffer, mask, baseline == null ? null : (R) baseline.record());
+        if (message != null) baselines.put(recordSerializer.getRecordClass(), new Baseline(message, sequence));
+
+        return message;
+    }
+
+    private void decode(PacketByteBuf buf, EnvType target, ClientConnection connection, PacketSender responseSender, Executor gameThread, IntArrayList indices, List<Record> messages) {
+        int handlerIndex = buf.readVarInt();
+
+        if (handlerIndex == COMPRESSED_MARKER) {
+            var inflated = PayloadCompression.decompress(buf);
+            try {
+                decode(inflated, target, connection, responseSender, gameThread, indices, messages);
+            } finally {
+                inflated.release();
+            }
+        } else if (handlerIndex == CHUNK_MARKER) {
+            if (this.streamChunkSize < 0) throw new NetworkException("Received a streamed chunk on channel " + this.packetId + ", which does not stream messages");
+
+            var incoming = this.incomingStreams.computeIfAbsent(connection, key -> new PayloadStreams.Incoming());
+            var payload = incoming.accept(buf, (streamId, transferredBytes, totalBytes) -> {
+                if (this.streamListeners.isEmpty()) return;
+                gameThread.execute(() -> this.notifyStreamListeners(new StreamProgress(connection, streamId, true, transferredBytes, totalBytes)));
+            });
+
+            if (payload == null) return;
+
+            try {
+                decode(payload, target, connection, responseSender, gameThread, indices, messages);
+            } finally {
+                payload.release();
+            }
+        } else if (handlerIndex == RESYNC_MARKER) {
+            // the index refers to a message we sent, so it is in the opposite direction
+            var serializer = serializersByIndex.get(target == EnvType.CLIENT ? buf.readVarInt() : -buf.readVarInt());
+            if (serializer == null) return;
+
+            var baselines = this.sentBaselines.get(connection);
+            if (baselines != null) baselines.remove(serializer.serializer.getRecordClass());
+        } else if (handlerIndex == BUNDLE_MARKER) {
+            while (buf.isReadable()) {
+                readMessage(buf, buf.readVarInt(), target, connection, responseSender, indices, messages);
+            }
+        } else {
+            readMessage(buf, handlerIndex, target, connection, responseSender, indices, messages);
+        }
+    }
+
+    private void readMessage(PacketByteBuf buf, int handlerIndex, EnvType target, ClientConnection connection, PacketSender responseSender, IntArrayList indices, List<Record> messages) {
+        if (handlerIndex == LOOPBACK_MARKER) {
+            // only the host of an integrated server shares memory with us,
+            // the marker is meaningless on any other connection
+            if (!this.usesLoopback(connection)) throw new NetworkException("Received a loopback message on channel " + this.packetId + " from a remote connection");
+
+            readLoopback(buf, target, indices, messages);
+            return;
+        }
+
+        var serializer = serializersByIndex.get(target == EnvType.CLIENT ? -handlerIndex : handlerIndex);
+
+        final int startIndex = buf.readerIndex();
+        final long start = System.nanoTime();
+
+        if (this.compactIdentifiers) IdentifierDictionary.enter(this.dictionaryFor(connection), OwoHandshake.registriesMatch(connection));
+
+        final Record message;
+        try {
+            message = serializer.isStateful(target)
+                    ? readStateful(buf, serializer, handlerIndex, connection, responseSender)
+                    : serializer.serializer.read(buf);
+        } finally {
+            if (this.compactIdentifiers) IdentifierDictionary.exit();
+        }
+
+        // count the handler index as well, so sent and received sizes are comparable
+        serializer.metrics.recordReceived(PacketByteBuf.getVarIntLength(handlerIndex) + buf.readerIndex() - startIndex, System.nanoTime() - start);
+        if (message == null) return;
+
+        indices.add(handlerIndex);
+        messages.add(message);
+    }
+
+    private void readLoopback(PacketByteBuf buf, EnvType target, IntArrayList indices, List<Record> messages) {
+        final int startIndex = buf.readerIndex();
+        final int ticket = buf.readVarInt();
+
+        final var message = this.loopbackQueue(target).messages.remove(ticket);
+        if (message == null) throw new NetworkException("Received unknown loopback message " + ticket);
+
+        final var serializer = this.serializersByClass.get(message.getClass());
+        serializer.metrics.recordReceived(PacketByteBuf.getVarIntLength(LOOPBACK_MARKER) + buf.readerIndex() - startIndex, 0);
+
+        indices.add(serializer.handlerIndex(target));
+        messages.add(message);
+    }
+
+    /**
+     * Runs the handlers of the given decoded messages. All handlers which run on
+     * the game thread are invoked in order within a single game thread task, the
+     * others are submitted to their executors individually
+     */
+    private <A extends EnvironmentAccess<?, ?, ?>> void dispatch(IntArrayList indices, List<Record> messages, EnvType target, List<ChannelHandler<Record, A>> handlers,
+                                                                 List<@Nullable Executor> executors, Executor gameThread, A access, @Nullable FloodGuard guard) {
+        boolean needsGameThread = false;
+
+        for (int i = 0; i < messages.size(); i++) {
+            final int handlerIndex = indices.getInt(i);
+            final var executor = executors.get(handlerIndex);
+
+            if (executor == null) {
+                needsGameThread = true;
+                continue;
+            }
+
+            final var handler = handlers.get(handlerIndex);
+            final var message = messages.get(i);
+            final var metrics = this.metricsFor(handlerIndex, target);
+            executor.execute(() -> {
+                try {
+                    final long start = System.nanoTime();
+                    handler.handle(message, access);
+                    metrics.recordHandled(System.nanoTime() - start);
+                } catch (Throwable e) {
+                    Owo.LOGGER.error("Handler for message class '{}' on channel {} threw an exception", message.getClass().getName(), this.packetId, e);
+                }
+            });
+        }
+
+        if (!needsGameThread) return;
+
+        if (guard != null && !guard.tryReserveTask(this.maxPendingTasks)) {
+            rejectFlood(guard, messages.size(), this.budgetRejectedMessages);
+            return;
+        }
+
+        gameThread.execute(() -> {
+            try {
+                for (int i = 0; i < messages.size(); i++) {
+                    final int handlerIndex = indices.getInt(i);
+                    if (executors.get(handlerIndex) != null) continue;
+
+                    final long start = System.nanoTime();
+                    handlers.get(handlerIndex).handle(messages.get(i), access);
+                    this.metricsFor(handlerIndex, target).recordHandled(System.nanoTime() - start);
+                }
+            } finally {
+                if (guard != null) guard.releaseTask();
+            }
+        });
+    }
+
+    private boolean shouldCompress(PacketByteBuf payload, ClientConnection connection) {
+        return this.compressionThreshold >= 0
+                && payload.readableBytes() > this.compressionThreshold
+                && !connection.isLocal()
+                && OwoHandshake.peerSupports(connection, OwoHandshake.FEATURE_COMPRESSION);
+    }
+
+    private PacketByteBuf compress(PacketByteBuf payload) {
+        var compressed = PayloadCompression.compress(payload);
+
+        this.compressedPayloads.increment();
+        this.uncompressedBytes.add(payload.readableBytes());
+        this.compressedBytes.add(compressed.readableBytes());
+
+        return compressed;
+    }
+
+    /**
+     * Compresses the given payload if it should be compressed for the given
+     * connection. If a new buffer is returned, the given one is released
+     */
+    private PacketByteBuf compressFor(PacketByteBuf payload, ClientConnection connection) {
+        if (!shouldCompress(payload, connection)) return payload;
+
+        var compressed = compress(payload);
+        payload.release();
+        return compressed;
+    }
+
+    private boolean exceedsChunkSize(PacketByteBuf payload) {
+        return this.streamChunkSize >= 0 && payload.readableBytes() > this.streamChunkSize;
+    }
+
+    private static boolean isChunk(PacketByteBuf buf) {
+        final int start = buf.readerIndex();
+        final boolean chunk = buf.readVarInt() == CHUNK_MARKER;
+
+        buf.readerIndex(start);
+        return chunk;
+    }
+
+    private void sendToPlayer(ServerPlayerEntity player, OutgoingPayload payload) {
+        payload.metrics.recordSent(payload.raw.readableBytes());
+
+        if (payload.streamable && this.exceedsChunkSize(payload.raw)) {
+            // streams are pumped after the bundles are flushed, so they never overtake bundled messages
+            var streams = this.serverStreams.computeIfAbsent(player.networkHandler, handler -> new PayloadStreams.Outgoing());
+            streams.queue(PacketByteBufs.retainedDuplicate(payload.forConnection(player.networkHandler.connection)));
+            this.streamedMessages.increment();
+        } else if (this.batched && player.server.isOnThread()) {
+            this.serverBundles.computeIfAbsent(player.networkHandler, handler -> new MessageBundle(MAX_CLIENTBOUND_BUNDLE_SIZE)).append(payload.raw);
+            this.batchedMessages.increment();
+        } else {
+            ServerPlayNetworking.send(player, this.packetId, PacketByteBufs.retainedDuplicate(payload.forConnection(player.networkHandler.connection)));
+        }
+    }
+
+    /**
+     * @return {@code true} if messages to the given connection can be handed to the
+     * peer directly, which is the case for the host of an integrated server
+     */
+    private boolean usesLoopback(ClientConnection connection) {
+        return this.loopback && connection.isLocal();
+    }
+
+    /**
+     * There is at most one local connection, so a queue per
+     * direction holds the messages of exactly one connection
+     *
+     * @param target The environment which receives the messages
+     */
+    private LoopbackQueue loopbackQueue(EnvType target) {
+        return target == EnvType.SERVER ? this.serverboundLoopback : this.clientboundLoopback;
+    }
+
+    /**
+     * Stores a copy of the given message for the peer on the local connection to pick
+     * up and creates the payload which tells it to do so. The payload still travels
+     * through the connection so that it is received in order with all other packets
+     */
+    @SuppressWarnings("unchecked")
+    private <R extends Record> PacketByteBuf loopbackPayload(R message, EnvType target) {
+        final var serializer = (IndexedSerializer<R>) this.serializersByClass.get(message.getClass());
+        if (serializer == null) throw new NetworkException("Message class '" + message.getClass() + "' is not registered");
+
+        final var queue = this.loopbackQueue(target);
+        final int ticket = queue.nextTicket.getAndIncrement() & 0x7FFFFFFF;
+        queue.messages.put(ticket, serializer.serializer.copy(message));
+        this.loopbackSends.increment();
+
+        var payload = PacketByteBufs.create();
+        payload.writeVarInt(LOOPBACK_MARKER);
+        payload.writeVarInt(ticket);
+        return payload;
+    }
+
+    private <R extends Record> void sendLoopback(ServerPlayerEntity player, R message) {
+        var payload = new OutgoingPayload(this.loopbackPayload(message, EnvType.CLIENT), this.metricsFor(message.getClass()));
+        payload.streamable = false;
+
+        this.sendToPlayer(player, payload);
+        payload.release();
+    }
+
+    private <R extends Record> void sendPerConnection(ServerPlayerEntity player, R message) {
+        if (this.usesLoopback(player.networkHandler.connection)) {
+            this.sendLoopback(player, message);
+            return;
+        }
+
+        var payload = new OutgoingPayload(this.encode(message, EnvType.CLIENT, player.networkHandler.connection), this.metricsFor(message.getClass()));
+        payload.streamable = !this.serializersByClass.get(message.getClass()).isStateful(EnvType.CLIENT);
+
+        this.sendToPlayer(player, payload);
+        payload.release();
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void sendToServer(PacketByteBuf encoded, boolean streamable) {
+        if (streamable && this.exceedsChunkSize(encoded)) {
+            this.clientStreams.queue(compressFor(encoded, MinecraftClient.getInstance().getNetworkHandler().getConnection()));
+            this.streamedMessages.increment();
+        } else if (this.batched && MinecraftClient.getInstance().isOnThread()) {
+            if (this.clientBundle == null) this.clientBundle = new MessageBundle(MAX_SERVERBOUND_BUNDLE_SIZE);
+
+            this.clientBundle.append(encoded);
+            encoded.release();
+
+            this.batchedMessages.increment();
+        } else {
+            ClientPlayNetworking.send(this.packetId, compressFor(encoded, MinecraftClient.getInstance().getNetworkHandler().getConnection()));
+        }
+    }
+
+    private @Nullable FloodGuard floodGuard(ServerPlayNetworkHandler handler) {
+        if (this.rateLimitPerSecond < 0 && this.maxPendingTasks < 0) return null;
+        return this.floodGuards.computeIfAbsent(handler, key -> new FloodGuard(handler.player, this.rateLimitPerSecond, this.rateLimitBurst));
+    }
+
+    private void rejectFlood(FloodGuard guard, int messages, LongAdder counter) {
+        counter.add(messages);
+        if (this.floodAction != FloodAction.KICK || !guard.markKicked()) return;
+
+        final var player = guard.player;
+        this.kickedPlayers.increment();
+        Owo.LOGGER.warn("Kicking {} for flooding channel {}", player.getEntityName(), this.packetId);
+
+        player.server.execute(() -> player.networkHandler.disconnect(Text.translatable("disconnect.exceeded_packet_rate")));
+    }
+
+    private static boolean isOffServerThread() {
+        final var server = Owo.currentServer();
+        return server != null && !server.isOnThread();
+    }
+
+    private void enqueue(PendingSend send) {
+        this.pendingSends.add(send);
+        this.queuedSends.increment();
+
+        int depth = this.pendingSendCount.incrementAndGet();
+        this.peakPendingSends.accumulateAndGet(depth, Math::max);
+    }
+
+    private void drainPendingSends() {
+        PendingSend send;
+        while ((send = this.pendingSends.poll()) != null) {
+            this.pendingSendCount.decrementAndGet();
+
+            for (var player : send.resolveTargets()) {
+                if (player.isDisconnected()) continue;
+
+                if (send.payload() == null) {
+                    this.sendPerConnection(player, send.message());
+                } else if (this.usesLoopback(player.networkHandler.connection)) {
+                    this.sendLoopback(player, send.message());
+                } else {
+                    this.sendToPlayer(player, send.payload());
+                }
+            }
+
+            if (send.payload() != null) send.payload().release();
+        }
+    }
+
+    private void discardPendingSends() {
+        PendingSend send;
+        while ((send = this.pendingSends.poll()) != null) {
+            this.pendingSendCount.decrementAndGet();
+            if (send.payload() != null) send.payload().release();
+        }
+    }
+
+    private void flushServerBundles() {
+        if (this.serverBundles.isEmpty()) return;
+
+        for (var entry : this.serverBundles.entrySet()) {
+            var handler = entry.getKey();
+            var sender = ServerPlayNetworking.getSender(handler);
+
+            for (var bundle : entry.getValue().finish()) {
+                sender.sendPacket(this.packetId, compressFor(bundle, handler.connection));
+                this.sentBundles.increment();
+            }
+        }
+
+        this.serverBundles.clear();
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void flushClientBundle() {
+        if (this.clientBundle == null) return;
+
+        var networkHandler = MinecraftClient.getInstance().getNetworkHandler();
+        if (networkHandler != null) {
+            for (var bundle : this.clientBundle.finish()) {
+                ClientPlayNetworking.send(this.packetId, compressFor(bundle, networkHandler.getConnection()));
+                this.sentBundles.increment();
+            }
+        } else {
+            this.clientBundle.discard();
+        }
+
+        this.clientBundle = null;
+    }
+
+    private void pumpServerStreams() {
+        if (this.serverStreams.isEmpty()) return;
+
+        var iterator = this.serverStreams.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var handler = entry.getKey();
+            var sender = ServerPlayNetworking.getSender(handler);
+
+            this.sentChunks.add(entry.getValue().pump(this.streamChunkSize, this.streamBytesPerTick,
+                    chunk -> sender.sendPacket(this.packetId, chunk),
+                    (streamId, transferredBytes, totalBytes) -> this.notifyStreamListeners(new StreamProgress(handler.connection, streamId, false, transferredBytes, totalBytes))));
+
+            if (entry.getValue().isEmpty()) iterator.remove();
+        }
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void pumpClientStreams() {
+        if (this.clientStreams.isEmpty()) return;
+
+        var networkHandler = MinecraftClient.getInstance().getNetworkHandler();
+        if (networkHandler == null) {
+            this.clientStreams.discard();
+            return;
+        }
+
+        this.sentChunks.add(this.clientStreams.pump(this.streamChunkSize, this.streamBytesPerTick,
+                chunk -> ClientPlayNetworking.send(this.packetId, chunk),
+                (streamId, transferredBytes, totalBytes) -> this.notifyStreamListeners(new StreamProgress(networkHandler.getConnection(), streamId, false, transferredBytes, totalBytes))));
+    }
+
+    // the per-connection state is kept until disconnect, since the
+    // event loop may be about to start a new stream in it
+    private void expireIncomingStreams() {
+        if (this.incomingStreams.isEmpty()) return;
+        this.incomingStreams.values().forEach(PayloadStreams.Incoming::expire);
+    }
+
+    private void notifyStreamListeners(StreamProgress progress) {
+        for (var listener : this.streamListeners) {
+            try {
+                listener.onProgress(progress);
+            } catch (Throwable e) {
+                Owo.LOGGER.error("Stream listener on channel {} threw an exception", this.packetId, e);
+            }
+        }
+    }
+
+    public class ClientHandle {
+
+        /**
+         * Sends the given message to the server
+         *
+         * @param message The message to send
+         * @see #send(Record[])
+         */
+        public <R extends Record> void send(R message) {
+            final var client = MinecraftClient.getInstance();
+            final var connection = client.getNetworkHandler().getConnection();
+
+            if (OwoNetChannel.this.usesLoopback(connection)) {
+                var payload = OwoNetChannel.this.loopbackPayload(message, EnvType.SERVER);
+                OwoNetChannel.this.metricsFor(message.getClass()).recordSent(payload.readableBytes());
+
+                OwoNetChannel.this.sendToServer(payload, false);
+                return;
+            }
+
+            if (OwoNetChannel.this.compactIdentifiers && !client.isOnThread()) {
+                // dictionary entries must reach the server in the order they were defined
+                client.execute(() -> this.send(message));
+                return;
+            }
+
+            var encoded = OwoNetChannel.this.encode(message, EnvType.SERVER, connection);
+            OwoNetChannel.this.metricsFor(message.getClass()).recordSent(encoded.readableBytes());
+
+            OwoNetChannel.this.sendToServer(encoded, !OwoNetChannel.this.serializersByClass.get(message.getClass()).isStateful(EnvType.SERVER));
+        }
+
+        /**
+         * Sends the given messages to the server
+         *
+         * @param messages The messages to send
+         */
+        @SafeVarargs
+        public final <R extends Record> void send(R... messages) {
+            for (R message : messages) send(message);
+        }
+    }
+
+    public class ServerHandle {
+
+        private Collection<ServerPlayerEntity> targets = Collections.emptySet();
+        private @Nullable Supplier<Collection<ServerPlayerEntity>> targetLookup = null;
+
+        private ServerHandle select(Collection<ServerPlayerEntity> targets) {
+            this.targets = targets;
+            this.targetLookup = null;
+            return this;
+        }
+
+        // target lookups which read game state are deferred to the server thread
+        private ServerHandle select(Supplier<Collection<ServerPlayerEntity>> targetLookup) {
+            this.targets = null;
+            this.targetLookup = targetLookup;
+            return this;
+        }
+
+        private Collection<ServerPlayerEntity> resolveTargets() {
+            return this.targetLookup != null ? this.targetLookup.get() : this.targets;
+        }
+
+        private void reset() {
+            this.targets = null;
+            this.targetLookup = null;
+        }
+
+        private <R extends Record> void enqueue(R message) {
+            final var payload = OwoNetChannel.this.encodesPerConnection(message.getClass(), EnvType.CLIENT)
+                    ? null
+                    : new OutgoingPayload(OwoNetChannel.this.encode(message, EnvType.CLIENT), OwoNetChannel.this.metricsFor(message.getClass()));
+
+            OwoNetChannel.this.enqueue(new PendingSend(this.targets, this.targetLookup, message, payload));
+        }
+
+        /**
+         * Sends the given message to the configured target(s)
+         * <b>Resets the target(s) after sending - this cannot be used
+         * for multiple messages on the same handle</b>
+         * <p>
+         * The message is only serialized once, every target
+         * receives a duplicate view of the same buffer. When called
+         * off the server thread, the message is encoded immediately
+         * and sent at the end of the current server tick
+         *
+         * @param message The message to send
+         * @see #send(Record[])
+         */
+        public <R extends Record> void send(R message) {
+            if (isOffServerThread()) {
+                this.enqueue(message);
+                this.reset();
+                return;
+            }
+
+            final var targets = this.resolveTargets();
+
+            if (OwoNetChannel.this.encodesPerConnection(message.getClass(), EnvType.CLIENT)) {
+                targets.forEach(player -> OwoNetChannel.this.sendPerConnection(player, message));
+                this.reset();
+                return;
+            }
+
+            // only encode if some target is not on the local connection
+            OutgoingPayload payload = null;
+            for (var player : targets) {
+                if (OwoNetChannel.this.usesLoopback(player.networkHandler.connection)) {
+                    OwoNetChannel.this.sendLoopback(player, message);
+                    continue;
+                }
+
+                if (payload == null) payload = new OutgoingPayload(OwoNetChannel.this.encode(message, EnvType.CLIENT), OwoNetChannel.this.metricsFor(message.getClass()));
+                OwoNetChannel.this.sendToPlayer(player, payload);
+            }
+            this.reset();
+
+            if (payload != null) payload.release();
+        }
+
+        /**
+         * Sends the given messages to the configured target(s)
+         * <b>Resets the target(s) after sending - this cannot be used
+         * multiple times on the same handle</b>
+         * <p>
+         * Each message is only serialized once, every target
+         * receives duplicate views of the same buffers
+         *
+         * @param messages The messages to send
+         */
+        @SafeVarargs
+        public final <R extends Record> void send(R... messages) {
+            if (isOffServerThread()) {
+                for (var message : messages) this.enqueue(message);
+                this.reset();
+                return;
+            }
+
+            // payloads are encoded once the first target which needs them comes up
+            final var payloads = new OutgoingPayload[messages.length];
+
+            this.resolveTargets().forEach(player -> {
+                final boolean loopback = OwoNetChannel.this.usesLoopback(player.networkHandler.connection);
+
+                for (int i = 0; i < messages.length; i++) {
+                    if (loopback) {
+                        OwoNetChannel.this.sendLoopback(player, messages[i]);
+                    } else if (OwoNetChannel.this.encodesPerConnection(messages[i].getClass(), EnvType.CLIENT)) {
+                        OwoNetChannel.this.sendPerConnection(player, messages[i]);
+                    } else {
+                        if (payloads[i] == null) payloads[i] = new OutgoingPayload(OwoNetChannel.this.encode(messages[i], EnvType.CLIENT), OwoNetChannel.this.metricsFor(messages[i].getClass()));
+                        OwoNetChannel.this.sendToPlayer(player, payloads[i]);
+                    }
+                }
+            });
+            this.reset();
+
+            for (var payload : payloads) {
+                if (payload != null) payload.release();
+            }
+        }
+    }
+
+    public interface ChannelHandler<R extends Record, E extends EnvironmentAccess<?, ?, ?>> {
+
+        /**
+         * Executed on the game thread to handle the incoming
+         * message - this can safely modify game state. Handlers
+         * registered with an executor run on that executor instead
+         * and must not touch game state
+         *
+         * @param message The message that was received
+         * @param access  The {@link EnvironmentAccess} used to obtain references
+         *                to the execution environment
+         */
+        void handle(R message, E access);
+    }
+
+    /**
+     * A simple wrapper that provides access to the environment a packet
+     * is being received / message is being handled in
+     *
+     * @param <P> The type of player to receive the packet
+     * @param <R> The runtime that the packet is being received in
+     * @param <N> The network handler that received the packet
+     */
+    public interface EnvironmentAccess<P extends PlayerEntity, R, N> {
+
+        /**
+         * @return The player that received the packet
+         */
+        P player();
+
+        /**
          * @return The environment the packet is being received in,
          * either a {@link MinecraftServer} or a {@link net.minecraft.client.MinecraftClient}
          */
@@ -472,6 +1644,16 @@ public class OwoNetChannel {
          * {@link net.minecraft.server.network.ServerPlayNetworkHandler}
          */
         N netHandler();
+
+        /**
+         * Schedules the given task on the game thread of this environment. Handlers
+         * running off the game thread use this to hand their results back
+         *
+         * @param task The task to run on the game thread
+         */
+        default void runOnGameThread(Runnable task) {
+            ((ThreadExecutor<?>) this.runtime()).execute(task);
+        }
     }
 
     private void verify() {
@@ -490,16 +1672,393 @@ public class OwoNetChannel {
                 channel.verify();
             }
         });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            // drain first, so that queued messages are part of this tick's bundles
+            for (var channel : REGISTERED_CHANNELS.values()) {
+                if (channel.pendingSendCount.get() > 0) channel.drainPendingSends();
+            }
+
+            for (var channel : BATCHED_CHANNELS) channel.flushServerBundles();
+            for (var channel : STREAMING_CHANNELS) {
+                channel.pumpServerStreams();
+                channel.expireIncomingStreams();
+            }
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            for (var channel : REGISTERED_CHANNELS.values()) channel.discardPendingSends();
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            for (var channel : BATCHED_CHANNELS) {
+                var bundle = channel.serverBundles.remove(handler);
+                if (bundle != null) bundle.discard();
+            }
+
+            for (var channel : REGISTERED_CHANNELS.values()) {
+                channel.sentBaselines.remove(handler.connection);
+                channel.receivedBaselines.remove(handler.connection);
+                channel.dictionaries.remove(handler.connection);
+                channel.floodGuards.remove(handler);
+
+                var streams = channel.serverStreams.remove(handler);
+                if (streams != null) streams.discard();
+
+                var incoming = channel.incomingStreams.remove(handler.connection);
+                if (incoming != null) incoming.discard();
+
+                if (handler.connection.isLocal()) {
+                    channel.serverboundLoopback.messages.clear();
+                    channel.clientboundLoopback.messages.clear();
+                }
+            }
+        });
+
+        if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
+            ClientTickEvents.END_CLIENT_TICK.register(client -> {
+                for (var channel : BATCHED_CHANNELS) channel.flushClientBundle();
+                for (var channel : STREAMING_CHANNELS) {
+                    channel.pumpClientStreams();
+                    channel.expireIncomingStreams();
+                }
+            });
+
+            ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+                for (var channel : BATCHED_CHANNELS) {
+                    if (channel.clientBundle == null) continue;
+
+                    channel.clientBundle.discard();
+                    channel.clientBundle = null;
+                }
+
+                for (var channel : REGISTERED_CHANNELS.values()) {
+                    channel.sentBaselines.remove(handler.getConnection());
+                    channel.receivedBaselines.remove(handler.getConnection());
+                    channel.dictionaries.remove(handler.getConnection());
+                    channel.clientStreams.discard();
+
+                    var incoming = channel.incomingStreams.remove(handler.getConnection());
+                    if (incoming != null) incoming.discard();
+
+                    if (handler.getConnection().isLocal()) {
+                        channel.serverboundLoopback.messages.clear();
+                        channel.clientboundLoopback.messages.clear();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A snapshot of a channel's batching counters
+     *
+     * @param batchedMessages The total amount of messages that were queued for batching
+     * @param sentBundles     The total amount of bundle packets those messages were sent in
+     */
+    public record BatchingStats(long batchedMessages, long sentBundles) {
+
+        /**
+         * @return The average amount of messages per sent
+         * bundle, or {@code 0} if no bundles were sent yet
+         */
+        public double averageBundleSize() {
+            return this.sentBundles == 0 ? 0 : this.batchedMessages / (double) this.sentBundles;
+        }
+    }
+
+    /**
+     * A snapshot of a channel's compression counters
+     *
+     * @param compressedPayloads The total amount of payloads that were compressed
+     * @param uncompressedBytes  The total size of those payloads before compression
+     * @param compressedBytes    The total size of those payloads after compression
+     */
+    public record CompressionStats(long compressedPayloads, long uncompressedBytes, long compressedBytes) {
+
+        /**
+         * @return The ratio of compressed to uncompressed size, or
+         * {@code 1} if nothing was compressed yet - lower is better
+         */
+        public double ratio() {
+            return this.uncompressedBytes == 0 ? 1 : this.compressedBytes / (double) this.uncompressedBytes;
+        }
+    }
+
+    /**
+     * A snapshot of a channel's streaming counters
+     *
+     * @param streamedMessages The total amount of messages that were streamed
+     * @param sentChunks       The total amount of chunks those messages were sent in
+     */
+    public record StreamingStats(long streamedMessages, long sentChunks) {}
+
+    /**
+     * The progress of a single streamed message
+     *
+     * @param connection       The connection the message is streamed over
+     * @param streamId         The id of the stream, unique per connection and direction
+     * @param incoming         {@code true} if the message is being received, {@code false} if it is being sent
+     * @param transferredBytes How many bytes of the message have been transferred so far
+     * @param totalBytes       The total size of the message on the wire
+     */
+    public record StreamProgress(ClientConnection connection, int streamId, boolean incoming, int transferredBytes, int totalBytes) {
+
+        /**
+         * @return The transferred fraction of the message, between {@code 0} and {@code 1}
+         */
+        public double fraction() {
+            return this.transferredBytes / (double) this.totalBytes;
+        }
+
+        /**
+         * @return {@code true} if the message has been transferred completely
+         */
+        public boolean complete() {
+            return this.transferredBytes >= this.totalBytes;
+        }
+    }
+
+    public interface StreamListener {
+
+        /**
+         * Called on the game thread whenever a streamed message on
+         * the channel this listener was added to makes progress
+         *
+         * @param progress The current progress of the stream
+         */
+        void onProgress(StreamProgress progress);
+    }
+
+    /**
+     * What to do with players which exceed the flood protection
+     * limits of a channel
+     *
+     * @see #onFlood(FloodAction)
+     */
+    public enum FloodAction {
+        /**
+         * Drop the messages over the limit
+         */
+        DROP,
+        /**
+         * Drop the messages over the limit and
+         * disconnect the player which sent them
+         */
+        KICK
+    }
+
+    /**
+     * A snapshot of a channel's flood protection counters
+     *
+     * @param rateLimitedMessages    The total amount of messages rejected by the rate limit
+     * @param budgetRejectedMessages The total amount of messages rejected because their sender had too many pending tasks
+     * @param kickedPlayers          The total amount of players kicked for flooding
+     */
+    public record FloodProtectionStats(long rateLimitedMessages, long budgetRejectedMessages, long kickedPlayers) {}
+
+    /**
+     * A snapshot of a channel's off-thread send queue
+     *
+     * @param queueDepth      The amount of sends currently waiting for the next server tick
+     * @param peakQueueDepth  The largest amount of sends that were waiting at once
+     * @param queuedSends     The total amount of sends that went through the queue
+     */
+    public record OffThreadSendStats(int queueDepth, int peakQueueDepth, long queuedSends) {}
+
+    /**
+     * A send issued off the server thread. Stateful messages
+     * depend on the baseline of each target, so they are only
+     * encoded once the send is drained
+     */
+    private record PendingSend(@Nullable Collection<ServerPlayerEntity> targets, @Nullable Supplier<Collection<ServerPlayerEntity>> targetLookup,
+                               Record message, @Nullable OutgoingPayload payload) {
+
+        private Collection<ServerPlayerEntity> resolveTargets() {
+            return this.targetLookup != null ? this.targetLookup.get() : this.targets;
+        }
+    }
+
+    /**
+     * The flood protection state of a single player on a single channel.
+     * The token bucket is only touched by the event loop of the player's
+     * connection, the pending task counter is shared with the game thread
+     */
+    private static final class FloodGuard {
+        private final ServerPlayerEntity player;
+        private final double tokensPerNano;
+        private final int burst;
+
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+        private final AtomicBoolean kicked = new AtomicBoolean();
+
+        private FloodGuard(ServerPlayerEntity player, int messagesPerSecond, int burst) {
+            this.player = player;
+            this.tokensPerNano = messagesPerSecond < 0 ? -1 : messagesPerSecond / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        /**
+         * @return {@code true} if at least the given amount of tokens is
+         * available, without consuming them
+         */
+        private boolean admit(int messages) {
+            if (this.kicked.get()) return false;
+            if (this.tokensPerNano < 0) return true;
+
+            this.refill();
+            return this.tokens >= messages;
+        }
+
+        private boolean tryAcquire(int messages) {
+            if (!this.admit(messages)) return false;
+            if (this.tokensPerNano >= 0) this.tokens -= messages;
+            return true;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.burst, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+            this.lastRefill = now;
+        }
+
+        private boolean tryReserveTask(int maxPendingTasks) {
+            if (this.pendingTasks.incrementAndGet() > maxPendingTasks && maxPendingTasks >= 0) {
+                this.pendingTasks.decrementAndGet();
+                return false;
+            }
+
+            return true;
+        }
+
+        private void releaseTask() {
+            this.pendingTasks.decrementAndGet();
+        }
+
+        /**
+         * @return {@code true} if this call marked the player as kicked
+         */
+        private boolean markKicked() {
+            return this.kicked.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * The last stateful message sent over or received from a connection,
+     * along with its sequence number - deltas apply only to their direct predecessor
+     */
+    private record Baseline(Record record, int sequence) {}
+
+    /**
+     * The loopback messages sent in one direction which the peer on the
+     * local connection has not picked up yet, keyed by their ticket
+     */
+    private static final class LoopbackQueue {
+        private final Map<Integer, Record> messages = new ConcurrentHashMap<>();
+        private final AtomicInteger nextTicket = new AtomicInteger();
+    }
+
+    /**
+     * An encoded message which is about to be sent to one or more
+     * players. The compressed form is only created once, if and
+     * when the first connection which should receive it asks for it
+     */
+    private final class OutgoingPayload {
+        private final PacketByteBuf raw;
+        private final MessageMetrics metrics;
+        private PacketByteBuf compressed = null;
+
+        // stateful messages must be received in order, so they are never streamed
+        private boolean streamable = true;
+
+        private OutgoingPayload(PacketByteBuf raw, MessageMetrics metrics) {
+            this.raw = raw;
+            this.metrics = metrics;
+        }
+
+        private PacketByteBuf forConnection(ClientConnection connection) {
+            if (!shouldCompress(this.raw, connection)) return this.raw;
+
+            if (this.compressed == null) this.compressed = compress(this.raw);
+            return this.compressed;
+        }
+
+        private void release() {
+            this.raw.release();
+            if (this.compressed != null) this.compressed.release();
+        }
+    }
+
+    /**
+     * The messages queued for a single connection during the current tick,
+     * already encoded back-to-back. Once the next message would push a bundle
+     * over the size limit of its direction, a new bundle is started
+     */
+    private static final class MessageBundle {
+        private final int maxSize;
+        private final List<PacketByteBuf> finished = new ArrayList<>();
+
+        private PacketByteBuf buffer;
+        private int messageCount;
+
+        private MessageBundle(int maxSize) {
+            this.maxSize = maxSize;
+            this.begin();
+        }
+
+        private void begin() {
+            this.buffer = PacketByteBufs.create();
+            this.buffer.writeVarInt(BUNDLE_MARKER);
+            this.messageCount = 0;
+        }
+
+        private void append(PacketByteBuf encoded) {
+            if (this.messageCount > 0 && this.buffer.readableBytes() + encoded.readableBytes() > this.maxSize) {
+                this.finished.add(this.complete());
+                this.begin();
+            }
+
+            this.buffer.writeBytes(encoded, encoded.readerIndex(), encoded.readableBytes());
+            this.messageCount++;
+        }
+
+        private PacketByteBuf complete() {
+            // a single message does not need the bundle marker
+            if (this.messageCount == 1) return PacketByteBufs.slice(this.buffer, 1, this.buffer.readableBytes() - 1);
+            return this.buffer;
+        }
+
+        /**
+         * @return The payloads to send, in order - the caller takes ownership of them
+         */
+        private List<PacketByteBuf> finish() {
+            this.finished.add(this.complete());
+            return this.finished;
+        }
+
+        private void discard() {
+            this.finished.forEach(PacketByteBuf::release);
+            this.buffer.release();
+        }
     }
 
     static final class IndexedSerializer<R extends Record> {
         private int clientHandlerIndex = -1;
         private int serverHandlerIndex = -1;
 
+        private boolean clientStateful = false;
+        private boolean serverStateful = false;
+
         final RecordSerializer<R> serializer;
+        final MessageMetrics metrics;
 
         private IndexedSerializer(RecordSerializer<R> serializer) {
             this.serializer = serializer;
+            this.metrics = new MessageMetrics(serializer.getRecordClass());
         }
 
         public static <R extends Record> IndexedSerializer<R> create(RecordSerializer<R> serializer, int index, EnvType target) {
@@ -520,6 +2079,20 @@ public class OwoNetChannel {
                 case SERVER -> serverHandlerIndex;
             };
         }
+
+        public void setStateful(boolean stateful, EnvType target) {
+            switch (target) {
+                case CLIENT -> this.clientStateful = stateful;
+                case SERVER -> this.serverStateful = stateful;
+            }
+        }
+
+        public boolean isStateful(EnvType target) {
+            return switch (target) {
+                case CLIENT -> clientStateful;
+                case SERVER -> serverStateful;
+            };
+        }
     }
 }
 
@@ -0,0 +1,100 @@
+package io.wispforest.owo.network;
+
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses {@link OwoNetChannel} payloads. Both
+ * directions reuse one codec per thread, so no native zlib state is
+ * created per packet
+ * <p>
+ * A compressed payload consists of {@link OwoNetChannel#COMPRESSED_MARKER},
+ * the uncompressed size and the deflated bytes of the original payload
+ */
+final class PayloadCompression {
+
+    /**
+     * Matches the maximum decompressed packet size vanilla accepts
+     */
+    private static final int MAX_UNCOMPRESSED_SIZE = 8388608;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private PayloadCompression() {}
+
+    /**
+     * Compresses the readable bytes of the given payload, without
+     * modifying its reader index
+     *
+     * @param payload The payload to compress
+     * @return A new buffer containing the compressed payload
+     */
+    static PacketByteBuf compress(PacketByteBuf payload) {
+        final var deflater = DEFLATER.get();
+        final var compressed = PacketByteBufs.create();
+
+        compressed.writeVarInt(OwoNetChannel.COMPRESSED_MARKER);
+        compressed.writeVarInt(payload.readableBytes());
+
+        try {
+            deflater.setInput(payload.nioBuffer());
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                compressed.ensureWritable(Math.max(256, payload.readableBytes() / 2));
+
+                int written = deflater.deflate(compressed.nioBuffer(compressed.writerIndex(), compressed.writableBytes()));
+                compressed.writerIndex(compressed.writerIndex() + written);
+            }
+        } finally {
+            deflater.reset();
+        }
+
+        return compressed;
+    }
+
+    /**
+     * Decompresses the remaining bytes of the given buffer, which
+     * must be positioned right after {@link OwoNetChannel#COMPRESSED_MARKER}
+     *
+     * @param buf The buffer to read the compressed payload from
+     * @return A new buffer containing the decompressed payload
+     */
+    static PacketByteBuf decompress(PacketByteBuf buf) {
+        final int size = buf.readVarInt();
+        if (size < 0 || size > MAX_UNCOMPRESSED_SIZE) {
+            throw new NetworkException("Compressed payload declares invalid size " + size);
+        }
+
+        final var inflater = INFLATER.get();
+        final var decompressed = new PacketByteBuf(Unpooled.buffer(size, size));
+
+        try {
+            inflater.setInput(buf.nioBuffer());
+
+            int read = inflater.inflate(decompressed.nioBuffer(0, size));
+            if (read != size || !inflater.finished()) {
+                throw new NetworkException("Compressed payload size mismatch, expected " + size + " bytes but got " + read);
+            }
+
+            decompressed.writerIndex(size);
+            buf.skipBytes(buf.readableBytes());
+
+            return decompressed;
+        } catch (DataFormatException e) {
+            decompressed.release();
+            throw new NetworkException("Malformed compressed payload: " + e.getMessage());
+        } catch (RuntimeException e) {
+            decompressed.release();
+            throw e;
+        } finally {
+            inflater.reset();
+        }
+    }
+}
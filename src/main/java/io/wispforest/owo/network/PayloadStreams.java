@@ -0,0 +1,266 @@
+package io.wispforest.owo.network;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.minecraft.network.PacketByteBuf;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Splits oversized {@link OwoNetChannel} payloads into chunks and reassembles
+ * them on the receiving side. Streams queued for a connection are sent one after
+ * another, a bounded amount of bytes per tick, so that other traffic on the
+ * connection is not blocked behind them
+ * <p>
+ * A chunk consists of {@link OwoNetChannel#CHUNK_MARKER}, the id of its stream,
+ * the total size of the streamed payload, the offset of the chunk within it
+ * and the bytes of the chunk
+ */
+final class PayloadStreams {
+
+    /**
+     * Matches the maximum decompressed size {@link PayloadCompression} accepts
+     */
+    static final int MAX_STREAM_SIZE = 8388608;
+
+    /**
+     * Serverbound custom payloads may not exceed 32767 bytes,
+     * this leaves enough room for the chunk header
+     */
+    static final int MAX_CHUNK_SIZE = 32000;
+
+    /**
+     * How many streams a single connection may have in flight at once, the
+     * sending side never has more than one but a fresh stream may start
+     * before the last chunk of the previous one has been processed
+     */
+    private static final int MAX_INCOMING_STREAMS = 4;
+
+    /**
+     * How many bytes of incomplete streams a single connection may have buffered at once
+     */
+    private static final int MAX_BUFFERED_BYTES = MAX_STREAM_SIZE;
+
+    /**
+     * Incomplete streams which have not received a chunk for this long are
+     * dropped - senders pump at least one chunk per tick, so they are dead
+     */
+    private static final long STREAM_TIMEOUT_NANOS = 30_000_000_000L;
+
+    private PayloadStreams() {}
+
+    @FunctionalInterface
+    interface ProgressSink {
+        void report(int streamId, int transferredBytes, int totalBytes);
+    }
+
+    /**
+     * The streams queued for a single connection
+     */
+    static final class Outgoing {
+        private final Deque<Stream> streams = new ArrayDeque<>();
+        private int nextStreamId = 0;
+
+        /**
+         * Queues the given payload for streaming, taking ownership of it
+         *
+         * @param payload The payload to stream
+         */
+        synchronized void queue(PacketByteBuf payload) {
+            this.streams.addLast(new Stream(this.nextStreamId++ & 0x7FFFFFFF, payload, payload.readerIndex(), payload.readableBytes()));
+        }
+
+        /**
+         * Sends chunks of the queued streams until at least {@code budget} bytes
+         * have been sent or all streams are complete. At least one chunk is
+         * sent, so streams make progress even if the budget is tiny
+         *
+         * @param chunkSize The maximum size of a chunk
+         * @param budget    The amount of bytes to send
+         * @param sender    The function which sends a chunk to the peer
+         * @param progress  Notified once for every stream that sent chunks
+         * @return The amount of chunks that were sent
+         */
+        synchronized int pump(int chunkSize, int budget, Consumer<PacketByteBuf> sender, ProgressSink progress) {
+            int sentBytes = 0, sentChunks = 0;
+
+            while (sentBytes < budget && !this.streams.isEmpty()) {
+                final var stream = this.streams.peekFirst();
+
+                final int offset = stream.payload.readerIndex() - stream.start;
+                final int length = Math.min(chunkSize, stream.payload.readableBytes());
+
+                final var chunk = PacketByteBufs.create();
+                chunk.writeVarInt(OwoNetChannel.CHUNK_MARKER);
+                chunk.writeVarInt(stream.id);
+                chunk.writeVarInt(stream.size);
+                chunk.writeVarInt(offset);
+                chunk.writeBytes(stream.payload, length);
+
+                sender.accept(chunk);
+                sentBytes += length;
+                sentChunks++;
+
+                if (!stream.payload.isReadable() || sentBytes >= budget) {
+                    progress.report(stream.id, offset + length, stream.size);
+                }
+
+                if (!stream.payload.isReadable()) {
+                    this.streams.removeFirst();
+                    stream.payload.release();
+                }
+            }
+
+            return sentChunks;
+        }
+
+        synchronized boolean isEmpty() {
+            return this.streams.isEmpty();
+        }
+
+        synchronized void discard() {
+            this.streams.forEach(stream -> stream.payload.release());
+            this.streams.clear();
+        }
+    }
+
+    /**
+     * The partially received streams of a single connection. Buffers grow
+     * as chunks arrive instead of being allocated at the declared size up front
+     */
+    static final class Incoming {
+        private final Int2ObjectMap<IncomingStream> streams = new Int2ObjectOpenHashMap<>();
+        private int bufferedBytes = 0;
+
+        /**
+         * Reads a chunk from the given buffer, which must be
+         * positioned right after {@link OwoNetChannel#CHUNK_MARKER}
+         *
+         * @param buf      The buffer to read the chunk from
+         * @param progress Notified about the progress of the chunk's stream
+         * @return The complete payload if this was the last chunk of its
+         * stream, otherwise {@code null}. The caller must release it
+         */
+        synchronized @Nullable PacketByteBuf accept(PacketByteBuf buf, ProgressSink progress) {
+            final int id = buf.readVarInt();
+            final int size = buf.readVarInt();
+            final int offset = buf.readVarInt();
+
+            if (size <= 0 || size > MAX_STREAM_SIZE) {
+                throw new NetworkException("Streamed payload declares invalid size " + size);
+            }
+
+            var stream = this.streams.get(id);
+            final int length = buf.readableBytes();
+
+            if (stream != null && stream.payload == null) {
+                // a chunk of this stream was rejected, so the rest of it is skipped
+                stream.lastActivity = System.nanoTime();
+                if (offset + length >= size) this.streams.remove(id);
+
+                buf.skipBytes(length);
+                return null;
+            }
+
+            if (offset == 0) {
+                if (stream != null) throw new NetworkException("Stream " + id + " was started twice");
+                if (this.streams.size() >= MAX_INCOMING_STREAMS) throw new NetworkException("Too many concurrent streams");
+
+                stream = new IncomingStream(new PacketByteBuf(Unpooled.buffer(Math.min(length, size), size)));
+                this.streams.put(id, stream);
+            } else if (stream == null || stream.payload.maxCapacity() != size || stream.payload.writerIndex() != offset) {
+                throw new NetworkException("Received out-of-order chunk at offset " + offset + " of stream " + id);
+            }
+
+            if (length > size - offset) throw new NetworkException("Chunk of stream " + id + " exceeds the declared size");
+            if (this.bufferedBytes + length > MAX_BUFFERED_BYTES) throw new NetworkException("Incomplete streams exceed " + MAX_BUFFERED_BYTES + " bytes");
+
+            stream.payload.writeBytes(buf, length);
+            stream.lastActivity = System.nanoTime();
+            this.bufferedBytes += length;
+
+            progress.report(id, stream.payload.writerIndex(), size);
+
+            if (stream.payload.writerIndex() < size) return null;
+
+            this.streams.remove(id);
+            this.bufferedBytes -= size;
+            return stream.payload;
+        }
+
+        /**
+         * Drops the stream of the chunk in the given buffer, which was rejected
+         * before it could be accepted. The remaining chunks of the stream are
+         * skipped. The buffer must be positioned right after {@link OwoNetChannel#CHUNK_MARKER}
+         *
+         * @param buf The buffer containing the rejected chunk
+         */
+        synchronized void reject(PacketByteBuf buf) {
+            final int id = buf.readVarInt();
+            final int size = buf.readVarInt();
+            final int offset = buf.readVarInt();
+            final boolean last = offset + buf.readableBytes() >= size;
+            buf.skipBytes(buf.readableBytes());
+
+            var stream = this.streams.get(id);
+            if (stream != null) this.release(stream);
+
+            if (last) {
+                this.streams.remove(id);
+            } else if (stream != null) {
+                stream.payload = null;
+                stream.lastActivity = System.nanoTime();
+            } else if (this.streams.size() < MAX_INCOMING_STREAMS) {
+                this.streams.put(id, new IncomingStream(null));
+            }
+        }
+
+        /**
+         * Drops all streams which have not made progress for too long
+         */
+        synchronized void expire() {
+            final long now = System.nanoTime();
+
+            var iterator = this.streams.values().iterator();
+            while (iterator.hasNext()) {
+                var stream = iterator.next();
+                if (now - stream.lastActivity < STREAM_TIMEOUT_NANOS) continue;
+
+                this.release(stream);
+                iterator.remove();
+            }
+        }
+
+        synchronized void discard() {
+            this.streams.values().forEach(this::release);
+            this.streams.clear();
+        }
+
+        private void release(IncomingStream stream) {
+            if (stream.payload == null) return;
+
+            this.bufferedBytes -= stream.payload.writerIndex();
+            stream.payload.release();
+        }
+    }
+
+    /**
+     * A partially received stream, whose payload is {@code null}
+     * if its remaining chunks are to be skipped
+     */
+    private static final class IncomingStream {
+        private @Nullable PacketByteBuf payload;
+        private long lastActivity = System.nanoTime();
+
+        private IncomingStream(@Nullable PacketByteBuf payload) {
+            this.payload = payload;
+        }
+    }
+
+    private record Stream(int id, PacketByteBuf payload, int start, int size) {}
+}
@@ -0,0 +1,87 @@
+package io.wispforest.owo.network;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Collection;
+
+/**
+ * Caches the players tracking each chunk for the duration of a single server
+ * tick, so that repeated broadcasts from the same chunk - like a cluster of
+ * machines that all sync their state - only walk the chunk's watchers once.
+ * The cache is cleared at the start and end of every tick, which means players
+ * who start or stop tracking a chunk during a tick are picked up the next tick
+ * <p>
+ * Lookups from threads other than the server thread bypass the cache
+ */
+public final class TrackingCache {
+
+    private static final Reference2ObjectMap<ServerWorld, Long2ObjectMap<Collection<ServerPlayerEntity>>> CACHE = new Reference2ObjectOpenHashMap<>();
+
+    private TrackingCache() {}
+
+    @ApiStatus.Internal
+    public static void init() {
+        ServerTickEvents.START_SERVER_TICK.register(server -> invalidate());
+        ServerTickEvents.END_SERVER_TICK.register(server -> invalidate());
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> CACHE.clear());
+    }
+
+    /**
+     * Equivalent to {@link PlayerLookup#tracking(ServerWorld, BlockPos)}, but
+     * reuses the result for all positions in the same chunk during this tick
+     *
+     * @param world The world to look up players in
+     * @param pos   The position to look up trackers for
+     * @return The players tracking the chunk which contains the given position,
+     * this collection must not be modified
+     */
+    public static Collection<ServerPlayerEntity> tracking(ServerWorld world, BlockPos pos) {
+        if (!world.getServer().isOnThread()) return PlayerLookup.tracking(world, pos);
+
+        final long chunk = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+        final var worldCache = CACHE.computeIfAbsent(world, key -> new Long2ObjectOpenHashMap<>());
+
+        var players = worldCache.get(chunk);
+        if (players == null) {
+            players = PlayerLookup.tracking(world, pos);
+            worldCache.put(chunk, players);
+        }
+
+        return players;
+    }
+
+    /**
+     * Equivalent to {@link PlayerLookup#tracking(BlockEntity)}, but reuses
+     * the result for all block entities in the same chunk during this tick
+     *
+     * @param blockEntity The block entity to look up trackers for
+     * @return The players tracking the chunk which contains the given
+     * block entity, this collection must not be modified
+     */
+    public static Collection<ServerPlayerEntity> tracking(BlockEntity blockEntity) {
+        if (!(blockEntity.getWorld() instanceof ServerWorld world)) {
+            throw new IllegalArgumentException("Only block entities in server worlds have trackers");
+        }
+
+        return tracking(world, blockEntity.getPos());
+    }
+
+    // the per-world maps are kept, so steady broadcasting does not allocate them every tick
+    private static void invalidate() {
+        for (var worldCache : CACHE.values()) {
+            if (!worldCache.isEmpty()) worldCache.clear();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package io.wispforest.owo.network.serialization;
+
+import io.wispforest.owo.network.NetworkException;
+import io.wispforest.owo.util.OwoFreezer;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.event.registry.RegistryIdRemapCallback;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryEntry;
+import net.minecraft.util.registry.RegistryKey;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The identifier tables of a single connection on a single channel. The
+ * first time an identifier is written it is sent in full along with a new
+ * id, after that only the id is sent. Both directions use separate tables,
+ * which each hold at most {@link #MAX_ENTRIES} identifiers - beyond that,
+ * new identifiers are simply sent in full every time
+ * <p>
+ * The built-in {@link Identifier} serializer and those created by
+ * {@link PacketBufSerializer#createRegistrySerializer(Registry)} use
+ * the dictionary which is active on the current thread, if any
+ * <p>
+ * Wire format of a single identifier:
+ * <ul>
+ *     <li>{@code 0} followed by the identifier - not entered into the table</li>
+ *     <li>{@code (id << 1) | 1} followed by the identifier - defines {@code id}</li>
+ *     <li>{@code (id + 1) << 1} - refers to the previously defined {@code id}</li>
+ * </ul>
+ * Messages which may arrive out of order relative to the ones sent after them,
+ * like streamed messages, must be written without definitions - see {@link #enter(IdentifierDictionary, boolean, boolean)}
+ */
+@ApiStatus.Internal
+public final class IdentifierDictionary {
+
+    public static final int MAX_ENTRIES = 4096;
+
+    /**
+     * The registries whose raw ids are compared during the handshake. Values of these
+     * registries are sent as raw ids if both sides have identical registries
+     */
+    private static final List<Registry<?>> SYNCED_REGISTRIES = List.of(
+            Registry.ITEM, Registry.BLOCK, Registry.FLUID, Registry.ENTITY_TYPE, Registry.STATUS_EFFECT, Registry.ENCHANTMENT
+    );
+
+    private static final ThreadLocal<ActiveDictionary> ACTIVE = ThreadLocal.withInitial(ActiveDictionary::new);
+
+    private static volatile @Nullable Long REGISTRY_DIGEST = null;
+
+    private final Object2IntMap<Identifier> sentIds = new Object2IntOpenHashMap<>();
+    private final List<Identifier> receivedIds = new ArrayList<>();
+
+    public IdentifierDictionary() {
+        this.sentIds.defaultReturnValue(-1);
+    }
+
+    // -------
+    // Context
+    // -------
+
+    /**
+     * Makes the given dictionary active on the current thread until {@link #exit()} is called
+     *
+     * @param dictionary  The dictionary to use
+     * @param registryIds Whether values of {@link #SYNCED_REGISTRIES} may be sent as raw ids
+     */
+    public static void enter(IdentifierDictionary dictionary, boolean registryIds) {
+        enter(dictionary, registryIds, true);
+    }
+
+    /**
+     * Makes the given dictionary active on the current thread until {@link #exit()} is called
+     *
+     * @param dictionary       The dictionary to use
+     * @param registryIds      Whether values of {@link #SYNCED_REGISTRIES} may be sent as raw ids
+     * @param allowDefinitions Whether identifiers which are not yet in the table may be
+     *                         added to it - if not, they are sent in full
+     */
+    public static void enter(IdentifierDictionary dictionary, boolean registryIds, boolean allowDefinitions) {
+        final var active = ACTIVE.get();
+        active.dictionary = dictionary;
+        active.registryIds = registryIds;
+        active.allowDefinitions = allowDefinitions;
+    }
+
+    public static void exit() {
+        final var active = ACTIVE.get();
+        active.dictionary = null;
+        active.registryIds = false;
+        active.allowDefinitions = true;
+    }
+
+    /**
+     * @return A mark which {@link #rollback(int)} can later return the sent table to
+     */
+    public int mark() {
+        return this.sentIds.size();
+    }
+
+    /**
+     * Forgets all identifiers which were added to the sent table after
+     * the given mark was taken. This must only be done if none of the
+     * messages which defined them are going to be sent
+     *
+     * @param mark The mark to return to, obtained from {@link #mark()}
+     */
+    public void rollback(int mark) {
+        this.sentIds.values().removeIf(id -> id >= mark);
+    }
+
+    static boolean useRawIds(Registry<?> registry) {
+        return ACTIVE.get().registryIds && SYNCED_REGISTRIES.contains(registry);
+    }
+
+    /**
+     * @return A digest over the raw ids of all registries whose values
+     * may be sent as raw ids, to be compared during the handshake
+     */
+    public static long registryDigest() {
+        var digest = REGISTRY_DIGEST;
+        if (digest == null) {
+            // the registries were remapped, or this class was loaded after the freeze
+            digest = computeRegistryDigest();
+            if (OwoFreezer.isFrozen()) REGISTRY_DIGEST = digest;
+        }
+        return digest;
+    }
+
+    // walks every registry by raw id, so identical registries always produce the same digest
+    private static long computeRegistryDigest() {
+        long digest = SYNCED_REGISTRIES.size();
+
+        for (var registry : SYNCED_REGISTRIES) {
+            digest = HashCommon.mix(digest * 31 + registry.getKey().getValue().hashCode());
+            digest = HashCommon.mix(digest * 31 + registry.size());
+
+            for (int rawId = 0; rawId < registry.size(); rawId++) {
+                final var id = registry.getEntry(rawId).flatMap(RegistryEntry::getKey).map(RegistryKey::getValue).orElse(null);
+                digest = HashCommon.mix(digest * 31 + (id == null ? 0 : id.hashCode()));
+            }
+        }
+
+        return digest;
+    }
+
+    static {
+        OwoFreezer.registerFreezeCallback(() -> REGISTRY_DIGEST = computeRegistryDigest());
+
+        // registry sync may change the raw ids after the freeze
+        for (var registry : SYNCED_REGISTRIES) {
+            RegistryIdRemapCallback.event(registry).register(state -> REGISTRY_DIGEST = null);
+        }
+    }
+
+    // -------------
+    // Serialization
+    // -------------
+
+    static void write(PacketByteBuf buf, Identifier id) {
+        final var active = ACTIVE.get();
+
+        if (active.dictionary == null) {
+            buf.writeIdentifier(id);
+        } else {
+            active.dictionary.writeEntry(buf, id, active.allowDefinitions);
+        }
+    }
+
+    static Identifier read(PacketByteBuf buf) {
+        final var dictionary = ACTIVE.get().dictionary;
+        return dictionary == null ? buf.readIdentifier() : dictionary.readEntry(buf);
+    }
+
+    private void writeEntry(PacketByteBuf buf, Identifier id, boolean allowDefinitions) {
+        int existing = this.sentIds.getInt(id);
+        if (existing != -1) {
+            buf.writeVarInt((existing + 1) << 1);
+            return;
+        }
+
+        if (allowDefinitions && this.sentIds.size() < MAX_ENTRIES) {
+            int newId = this.sentIds.size();
+            this.sentIds.put(id, newId);
+
+            buf.writeVarInt((newId << 1) | 1);
+        } else {
+            buf.writeVarInt(0);
+        }
+
+        buf.writeIdentifier(id);
+    }
+
+    private Identifier readEntry(PacketByteBuf buf) {
+        final int tag = buf.readVarInt();
+        if (tag == 0) return buf.readIdentifier();
+
+        if ((tag & 1) == 1) {
+            int newId = tag >>> 1;
+            if (newId != this.receivedIds.size() || newId >= MAX_ENTRIES) {
+                throw new NetworkException("Identifier dictionary out of sync, expected id " + this.receivedIds.size() + " but got " + newId);
+            }
+
+            var id = buf.readIdentifier();
+            this.receivedIds.add(id);
+            return id;
+        }
+
+        int existing = (tag >>> 1) - 1;
+        if (existing >= this.receivedIds.size()) {
+            throw new NetworkException("Identifier dictionary out of sync, unknown id " + existing);
+        }
+
+        return this.receivedIds.get(existing);
+    }
+
+    private static final class ActiveDictionary {
+        private @Nullable IdentifierDictionary dictionary = null;
+        private boolean registryIds = false;
+        private boolean allowDefinitions = true;
+    }
+}
@@ -5,6 +5,12 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.effect.StatusEffect;
+import net.minecraft.fluid.Fluid;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.network.PacketByteBuf;
@@ -18,12 +24,17 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.math.Vec3f;
 import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryEntry;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -43,6 +54,18 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
     private static final Map<Class<?>, Supplier<?>> COLLECTION_PROVIDERS = new HashMap<>();
     private static final Map<Class<?>, PacketBufSerializer<?>> SERIALIZERS = new HashMap<>();
 
+    // built-in serializers which are only used if nothing else is registered for their class,
+    // so that mods which register their own serializers for these classes keep working
+    private static final Map<Class<?>, PacketBufSerializer<?>> FALLBACK_SERIALIZERS = new HashMap<>();
+
+    private static final PacketBufSerializer<PacketByteBuf> RETAINED_SLICE = new PacketBufSerializer<>(
+            PacketBufSerializer::writeEmbeddedBuf,
+            buf -> RetainedPacketByteBuf.read(buf, buf.readVarInt())
+    );
+
+    // composed serializers for generic types, keyed by their canonical form
+    private static final Map<Type, PacketBufSerializer<?>> GENERIC_SERIALIZERS = new HashMap<>();
+
     /**
      * Enables (de-)serialization for the given class
      *
@@ -76,35 +99,96 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
     }
 
     /**
-     * Gets the serializer for the given class, using additional data from
-     * generics, or throws an exception if none is registered
+     * Gets the serializer for the given type, using additional data from
+     * generics, or throws an exception if none is registered. Type arguments
+     * are resolved recursively, so types like {@code Map<Identifier, List<BlockPos>>}
+     * or {@code Optional<UUID>[]} are supported. Wildcards and type variables
+     * are resolved to their bound
+     * <p>
+     * Composed serializers are cached, so all occurrences of the same
+     * generic type share a single serializer instance
      *
      * @param type The type to obtain a serializer for
      * @return The respective serializer instance
      */
-    @SuppressWarnings("unchecked")
     public static PacketBufSerializer<?> getGeneric(Type type) {
         if (type instanceof Class<?> klass) return get(klass);
 
+        final var canonical = canonicalize(type);
+        if (canonical instanceof Class<?> klass) return get(klass);
+
+        var serializer = GENERIC_SERIALIZERS.get(canonical);
+        if (serializer == null) {
+            serializer = createGeneric(canonical);
+            GENERIC_SERIALIZERS.put(canonical, serializer);
+        }
+
+        return serializer;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static PacketBufSerializer<?> createGeneric(Type type) {
+        if (type instanceof GenericArrayType arrayType) {
+            final var componentType = arrayType.getGenericComponentType();
+            return createObjectArraySerializer(erase(componentType), (PacketBufSerializer<Object>) getGeneric(componentType));
+        }
+
         var pType = (ParameterizedType) type;
         Class<?> raw = (Class<?>) pType.getRawType();
         var typeArgs = pType.getActualTypeArguments();
 
         if (Map.class.isAssignableFrom(raw)) {
-            return PacketBufSerializer.createMapSerializer(conform(raw, Map.class), (Class<?>) typeArgs[0], (Class<?>) typeArgs[1]);
+            return PacketBufSerializer.createMapSerializer((Class) raw, getGeneric(typeArgs[0]), getGeneric(typeArgs[1]));
         }
 
         if (Collection.class.isAssignableFrom(raw)) {
-            return PacketBufSerializer.createCollectionSerializer(conform(raw, Collection.class), (Class<?>) typeArgs[0]);
+            return PacketBufSerializer.createCollectionSerializer((Class) raw, getGeneric(typeArgs[0]));
         }
 
         if (Optional.class.isAssignableFrom(raw)) {
-            return PacketBufSerializer.createOptionalSerializer((Class<?>) typeArgs[0]);
+            return PacketBufSerializer.createOptionalSerializer(getGeneric(typeArgs[0]));
         }
 
         return get(raw);
     }
 
+    /**
+     * Replaces all wildcards and type variables in the given type with their
+     * bounds and rebuilds the remaining parameterized and array types, so that
+     * equal shapes produce equal cache keys regardless of where they came from
+     */
+    private static Type canonicalize(Type type) {
+        if (type instanceof Class<?>) {
+            return type;
+        } else if (type instanceof ParameterizedType pType) {
+            var args = pType.getActualTypeArguments();
+            var canonicalArgs = new Type[args.length];
+            for (int i = 0; i < args.length; i++) canonicalArgs[i] = canonicalize(args[i]);
+
+            return new CanonicalParameterizedType((Class<?>) pType.getRawType(), canonicalArgs);
+        } else if (type instanceof GenericArrayType arrayType) {
+            var component = canonicalize(arrayType.getGenericComponentType());
+            return component instanceof Class<?> componentClass
+                    ? componentClass.arrayType()
+                    : new CanonicalArrayType(component);
+        } else if (type instanceof WildcardType wildcard) {
+            var lowerBounds = wildcard.getLowerBounds();
+            return canonicalize(lowerBounds.length != 0 ? lowerBounds[0] : wildcard.getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable<?> variable) {
+            // erase right away, bounds like T extends Comparable<T> refer back to the variable
+            return erase(variable.getBounds()[0]);
+        }
+
+        throw new IllegalStateException("Unsupported type '" + type.getTypeName() + "'");
+    }
+
+    private static Class<?> erase(Type type) {
+        if (type instanceof Class<?> klass) return klass;
+        if (type instanceof ParameterizedType pType) return (Class<?>) pType.getRawType();
+        if (type instanceof GenericArrayType arrayType) return erase(arrayType.getGenericComponentType()).arrayType();
+        return erase(canonicalize(type));
+    }
+
     /**
      * Gets the serializer for the given class, or throws
      * an exception if none is registered
@@ -137,6 +221,9 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
         PacketBufSerializer<T> serializer = (PacketBufSerializer<T>) SERIALIZERS.get(clazz);
 
         if (serializer == null) {
+            final var fallback = (PacketBufSerializer<T>) FALLBACK_SERIALIZERS.get(clazz);
+            if (fallback != null) return fallback;
+
             if (Record.class.isAssignableFrom(clazz))
                 serializer = (PacketBufSerializer<T>) PacketBufSerializer.createRecordSerializer(conform(clazz, Record.class));
             else if (clazz.isEnum())
@@ -194,10 +281,21 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
      * @return The created serializer
      */
     public static <K, V, T extends Map<K, V>> PacketBufSerializer<T> createMapSerializer(Class<T> clazz, Class<K> keyClass, Class<V> valueClass) {
+        return createMapSerializer(clazz, get(keyClass), get(valueClass));
+    }
+
+    /**
+     * Tries to create a serializer capable of
+     * serializing the given map type
+     *
+     * @param clazz           The map type
+     * @param keySerializer   The serializer to use for the map's keys
+     * @param valueSerializer The serializer to use for the map's values
+     * @return The created serializer
+     */
+    public static <K, V, T extends Map<K, V>> PacketBufSerializer<T> createMapSerializer(Class<T> clazz, PacketBufSerializer<K> keySerializer, PacketBufSerializer<V> valueSerializer) {
         createCollection(clazz);
 
-        var keySerializer = get(keyClass);
-        var valueSerializer = get(valueClass);
         return new PacketBufSerializer<>((buf, t) -> buf.writeMap(t, keySerializer.serializer(), valueSerializer.serializer()),
                 buf -> buf.readMap(buf1 -> createCollection(clazz), keySerializer.deserializer(), valueSerializer.deserializer()));
     }
@@ -211,9 +309,20 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
      * @return The created serializer
      */
     public static <E, T extends Collection<E>> PacketBufSerializer<T> createCollectionSerializer(Class<T> clazz, Class<E> elementClass) {
+        return createCollectionSerializer(clazz, get(elementClass));
+    }
+
+    /**
+     * Tries to create a serializer capable of
+     * serializing the given collection type
+     *
+     * @param clazz             The collection type
+     * @param elementSerializer The serializer to use for the collection's elements
+     * @return The created serializer
+     */
+    public static <E, T extends Collection<E>> PacketBufSerializer<T> createCollectionSerializer(Class<T> clazz, PacketBufSerializer<E> elementSerializer) {
         createCollection(clazz);
 
-        var elementSerializer = get(elementClass);
         return new PacketBufSerializer<>((buf, t) -> buf.writeCollection(t, elementSerializer.serializer()),
                 buf -> buf.readCollection(value -> createCollection(clazz), elementSerializer.deserializer()));
     }
@@ -226,37 +335,62 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
      * @return The created serializer
      */
     public static <E> PacketBufSerializer<Optional<E>> createOptionalSerializer(Class<E> elementClass) {
-        var elementSerializer = get(elementClass);
+        return createOptionalSerializer(get(elementClass));
+    }
+
+    /**
+     * Tries to create a serializer capable of
+     * serializing optionals with the given element serializer
+     *
+     * @param elementSerializer The serializer to use for the optional's value
+     * @return The created serializer
+     */
+    public static <E> PacketBufSerializer<Optional<E>> createOptionalSerializer(PacketBufSerializer<E> elementSerializer) {
         return new PacketBufSerializer<>((buf, t) -> buf.writeOptional(t, elementSerializer.serializer()),
                 buf -> buf.readOptional(elementSerializer.deserializer()));
     }
 
     /**
      * Tries to create a serializer capable of
-     * serializing arrays of the given element type
+     * serializing arrays of the given element type.
+     * Arrays of primitives use the dedicated serializers
+     * which (de-)serialize the array without boxing
      *
      * @param elementClass The array element type
      * @return The created serializer
      */
     @SuppressWarnings("unchecked")
     public static PacketBufSerializer<?> createArraySerializer(Class<?> elementClass) {
-        var elementSerializer = (PacketBufSerializer<Object>) get(elementClass);
+        if (elementClass.isPrimitive()) return get(elementClass.arrayType());
+        return createObjectArraySerializer(elementClass, (PacketBufSerializer<Object>) get(elementClass));
+    }
+
+    private static PacketBufSerializer<?> createObjectArraySerializer(Class<?> elementClass, PacketBufSerializer<Object> elementSerializer) {
         return new PacketBufSerializer<>((buf, t) -> {
-            final int length = Array.getLength(t);
-            buf.writeVarInt(length);
-            for (int i = 0; i < length; i++) {
-                elementSerializer.serializer().accept(buf, Array.get(t, i));
+            final var array = (Object[]) t;
+            buf.writeVarInt(array.length);
+            for (var element : array) {
+                elementSerializer.serializer().accept(buf, element);
             }
         }, buf -> {
-            final int length = buf.readVarInt();
-            Object array = Array.newInstance(elementClass, length);
+            final int length = readArrayLength(buf, 1);
+            Object[] array = (Object[]) Array.newInstance(elementClass, length);
             for (int i = 0; i < length; i++) {
-                Array.set(array, i, elementSerializer.deserializer().apply(buf));
+                array[i] = elementSerializer.deserializer().apply(buf);
             }
             return array;
         });
     }
 
+    /**
+     * @return A serializer for {@link PacketByteBuf}s which reads retained slices
+     * of the source buffer instead of copies
+     * @see RetainedSlice
+     */
+    public static PacketBufSerializer<PacketByteBuf> retainedSliceSerializer() {
+        return RETAINED_SLICE;
+    }
+
     /**
      * Tries to create a serializer capable of
      * serializing the given record class
@@ -280,6 +414,39 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
         return new PacketBufSerializer<>(PacketByteBuf::writeEnumConstant, buf -> buf.readEnumConstant(enumClass));
     }
 
+    /**
+     * Creates a serializer for entries of the given registry. On channels with
+     * {@code compactIdentifiers()} enabled, entries are sent through the connection's
+     * identifier dictionary - or as raw ids, if the registry is one of those
+     * compared during the handshake and both sides turned out to have identical ids.
+     * Elsewhere, entries are always sent by their identifier
+     *
+     * @param registry The registry whose entries to serialize
+     * @return The created serializer
+     */
+    public static <T> PacketBufSerializer<T> createRegistrySerializer(Registry<T> registry) {
+        return new PacketBufSerializer<>((buf, value) -> {
+            if (IdentifierDictionary.useRawIds(registry)) {
+                buf.writeVarInt(registry.getRawId(value));
+            } else {
+                IdentifierDictionary.write(buf, registry.getId(value));
+            }
+        }, buf -> {
+            // defaulted registries return their default for unknown entries instead of null,
+            // so whether the entry exists has to be checked explicitly
+            final T value;
+            if (IdentifierDictionary.useRawIds(registry)) {
+                value = registry.getEntry(buf.readVarInt()).map(RegistryEntry::value).orElse(null);
+            } else {
+                final var id = IdentifierDictionary.read(buf);
+                value = registry.containsId(id) ? registry.get(id) : null;
+            }
+
+            if (value == null) throw new IllegalStateException("Received unknown entry of registry " + registry.getKey().getValue());
+            return value;
+        });
+    }
+
     @SuppressWarnings("unchecked")
     public static <T, K> PacketBufSerializer<T> createDispatchedSerializer(Function<K, PacketBufSerializer<? extends T>> keyToSerializer, Function<T, K> keyGetter, PacketBufSerializer<K> keySerializer) {
         return new PacketBufSerializer<>((buf, value) -> {
@@ -350,6 +517,152 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
         });
     }
 
+    // ----------------
+    // Primitive arrays
+    // ----------------
+
+    // writes the readable bytes of the embedded buffer without consuming them,
+    // so the same buffer can be part of multiple encoded messages
+    private static void writeEmbeddedBuf(PacketByteBuf buf, PacketByteBuf embedded) {
+        buf.writeVarInt(embedded.readableBytes());
+        buf.writeBytes(embedded, embedded.readerIndex(), embedded.readableBytes());
+    }
+
+    private static int readArrayLength(PacketByteBuf buf, int minElementSize) {
+        final int length = buf.readVarInt();
+        if (length < 0 || (long) length * minElementSize > buf.readableBytes()) {
+            throw new IllegalStateException("Array length " + length + " exceeds remaining buffer size " + buf.readableBytes());
+        }
+        return length;
+    }
+
+    private static void writeBooleanArray(PacketByteBuf buf, boolean[] array) {
+        buf.writeVarInt(array.length);
+        for (boolean element : array) buf.writeBoolean(element);
+    }
+
+    private static boolean[] readBooleanArray(PacketByteBuf buf) {
+        final var array = new boolean[readArrayLength(buf, 1)];
+        for (int i = 0; i < array.length; i++) array[i] = buf.readBoolean();
+        return array;
+    }
+
+    private static void writeIntArray(PacketByteBuf buf, int[] array) {
+        buf.writeVarInt(array.length);
+        for (int element : array) buf.writeVarInt(element);
+    }
+
+    private static int[] readIntArray(PacketByteBuf buf) {
+        final var array = new int[readArrayLength(buf, 1)];
+        for (int i = 0; i < array.length; i++) array[i] = buf.readVarInt();
+        return array;
+    }
+
+    private static void writeLongArray(PacketByteBuf buf, long[] array) {
+        buf.writeVarInt(array.length);
+        for (long element : array) buf.writeVarLong(element);
+    }
+
+    private static long[] readLongArray(PacketByteBuf buf) {
+        final var array = new long[readArrayLength(buf, 1)];
+        for (int i = 0; i < array.length; i++) array[i] = buf.readVarLong();
+        return array;
+    }
+
+    private static void writeByteArray(PacketByteBuf buf, byte[] array) {
+        buf.writeVarInt(array.length);
+        buf.writeBytes(array);
+    }
+
+    private static byte[] readByteArray(PacketByteBuf buf) {
+        final var array = new byte[readArrayLength(buf, 1)];
+        buf.readBytes(array);
+        return array;
+    }
+
+    // fixed-width arrays are copied in bulk through a big-endian view of the buffer,
+    // which matches the per-element format exactly
+
+    private static void writeFloatArray(PacketByteBuf buf, float[] array) {
+        buf.writeVarInt(array.length);
+        if (bulkWriteView(buf, array.length * Float.BYTES) instanceof ByteBuffer view) {
+            view.asFloatBuffer().put(array);
+        } else {
+            for (float element : array) buf.writeFloat(element);
+        }
+    }
+
+    private static float[] readFloatArray(PacketByteBuf buf) {
+        final var array = new float[readArrayLength(buf, Float.BYTES)];
+        bulkReadView(buf, array.length * Float.BYTES).asFloatBuffer().get(array);
+        return array;
+    }
+
+    private static void writeDoubleArray(PacketByteBuf buf, double[] array) {
+        buf.writeVarInt(array.length);
+        if (bulkWriteView(buf, array.length * Double.BYTES) instanceof ByteBuffer view) {
+            view.asDoubleBuffer().put(array);
+        } else {
+            for (double element : array) buf.writeDouble(element);
+        }
+    }
+
+    private static double[] readDoubleArray(PacketByteBuf buf) {
+        final var array = new double[readArrayLength(buf, Double.BYTES)];
+        bulkReadView(buf, array.length * Double.BYTES).asDoubleBuffer().get(array);
+        return array;
+    }
+
+    private static void writeShortArray(PacketByteBuf buf, short[] array) {
+        buf.writeVarInt(array.length);
+        if (bulkWriteView(buf, array.length * Short.BYTES) instanceof ByteBuffer view) {
+            view.asShortBuffer().put(array);
+        } else {
+            for (short element : array) buf.writeShort(element);
+        }
+    }
+
+    private static short[] readShortArray(PacketByteBuf buf) {
+        final var array = new short[readArrayLength(buf, Short.BYTES)];
+        bulkReadView(buf, array.length * Short.BYTES).asShortBuffer().get(array);
+        return array;
+    }
+
+    private static void writeCharArray(PacketByteBuf buf, char[] array) {
+        buf.writeVarInt(array.length);
+        if (bulkWriteView(buf, array.length * Character.BYTES) instanceof ByteBuffer view) {
+            view.asCharBuffer().put(array);
+        } else {
+            for (char element : array) buf.writeChar(element);
+        }
+    }
+
+    private static char[] readCharArray(PacketByteBuf buf) {
+        final var array = new char[readArrayLength(buf, Character.BYTES)];
+        bulkReadView(buf, array.length * Character.BYTES).asCharBuffer().get(array);
+        return array;
+    }
+
+    /**
+     * Reserves {@code bytes} bytes in the given buffer and returns a writable
+     * view onto them, or {@code null} if the buffer is not backed by an array -
+     * in which case nothing was reserved and the caller must write element-wise
+     */
+    private static @Nullable ByteBuffer bulkWriteView(PacketByteBuf buf, int bytes) {
+        buf.ensureWritable(bytes);
+        if (!buf.hasArray()) return null;
+
+        final var view = ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.writerIndex(), bytes).slice();
+        buf.writerIndex(buf.writerIndex() + bytes);
+        return view;
+    }
+
+    private static ByteBuffer bulkReadView(PacketByteBuf buf, int bytes) {
+        final var view = buf.nioBuffer(buf.readerIndex(), bytes);
+        buf.skipBytes(bytes);
+        return view;
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> Class<T> conform(Class<?> clazz, Class<T> target) {
         return (Class<T>) clazz;
@@ -373,6 +686,19 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
 
         register(Void.class, (packetByteBuf, unused) -> {}, packetByteBuf -> null);
 
+        // ----------------
+        // Primitive arrays
+        // ----------------
+
+        register(boolean[].class, PacketBufSerializer::writeBooleanArray, PacketBufSerializer::readBooleanArray);
+        register(int[].class, PacketBufSerializer::writeIntArray, PacketBufSerializer::readIntArray);
+        register(long[].class, PacketBufSerializer::writeLongArray, PacketBufSerializer::readLongArray);
+        register(float[].class, PacketBufSerializer::writeFloatArray, PacketBufSerializer::readFloatArray);
+        register(double[].class, PacketBufSerializer::writeDoubleArray, PacketBufSerializer::readDoubleArray);
+        register(byte[].class, PacketBufSerializer::writeByteArray, PacketBufSerializer::readByteArray);
+        register(short[].class, PacketBufSerializer::writeShortArray, PacketBufSerializer::readShortArray);
+        register(char[].class, PacketBufSerializer::writeCharArray, PacketBufSerializer::readCharArray);
+
         // ----
         // Misc
         // ----
@@ -380,10 +706,7 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
         register(String.class, PacketByteBuf::writeString, PacketByteBuf::readString);
         register(UUID.class, PacketByteBuf::writeUuid, PacketByteBuf::readUuid);
         register(Date.class, PacketByteBuf::writeDate, PacketByteBuf::readDate);
-        register(PacketByteBuf.class, (buf, other) -> {
-            buf.writeVarInt(other.readableBytes());
-            buf.writeBytes(other);
-        }, buf -> new PacketByteBuf(buf.readBytes(buf.readVarInt())));
+        register(PacketByteBuf.class, PacketBufSerializer::writeEmbeddedBuf, buf -> new PacketByteBuf(buf.readBytes(buf.readVarInt())));
 
         // --------
         // MC Types
@@ -392,7 +715,7 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
         register(BlockPos.class, PacketByteBuf::writeBlockPos, PacketByteBuf::readBlockPos);
         register(ChunkPos.class, PacketByteBuf::writeChunkPos, PacketByteBuf::readChunkPos);
         register(ItemStack.class, PacketByteBuf::writeItemStack, PacketByteBuf::readItemStack);
-        register(Identifier.class, PacketByteBuf::writeIdentifier, PacketByteBuf::readIdentifier);
+        register(Identifier.class, IdentifierDictionary::write, IdentifierDictionary::read);
         register(NbtCompound.class, PacketByteBuf::writeNbt, PacketByteBuf::readNbt);
         register(BlockHitResult.class, PacketByteBuf::writeBlockHitResult, PacketByteBuf::readBlockHitResult);
         register(BitSet.class, PacketByteBuf::writeBitSet, PacketByteBuf::readBitSet);
@@ -408,6 +731,13 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
             return particleType.getParametersFactory().read(particleType, buf);
         });
 
+        FALLBACK_SERIALIZERS.put(Item.class, createRegistrySerializer(Registry.ITEM));
+        FALLBACK_SERIALIZERS.put(Block.class, createRegistrySerializer(Registry.BLOCK));
+        FALLBACK_SERIALIZERS.put(Fluid.class, createRegistrySerializer(Registry.FLUID));
+        FALLBACK_SERIALIZERS.put(StatusEffect.class, createRegistrySerializer(Registry.STATUS_EFFECT));
+        FALLBACK_SERIALIZERS.put(Enchantment.class, createRegistrySerializer(Registry.ENCHANTMENT));
+        FALLBACK_SERIALIZERS.put(EntityType.class, createRegistrySerializer(Registry.ENTITY_TYPE));
+
         register(Vec3d.class, VectorSerializer::write, VectorSerializer::read);
         register(Vec3f.class, VectorSerializer::writef, VectorSerializer::readf);
 
@@ -420,4 +750,57 @@ public record PacketBufSerializer<T>(PacketByteBuf.PacketWriter<T> serializer, P
         registerCollectionProvider(Map.class, LinkedHashMap::new);
     }
 
+    private record CanonicalParameterizedType(Class<?> rawType, Type[] typeArguments) implements ParameterizedType {
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return this.typeArguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return this.rawType;
+        }
+
+        @Override
+        public @Nullable Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CanonicalParameterizedType other
+                    && this.rawType == other.rawType
+                    && Arrays.equals(this.typeArguments, other.typeArguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.rawType.hashCode() + Arrays.hashCode(this.typeArguments);
+        }
+
+        @Override
+        public String toString() {
+            return this.getTypeName();
+        }
+
+        @Override
+        public String getTypeName() {
+            return this.rawType.getTypeName() + Arrays.stream(this.typeArguments).map(Type::getTypeName).collect(Collectors.joining(", ", "<", ">"));
+        }
+    }
+
+    private record CanonicalArrayType(Type componentType) implements GenericArrayType {
+
+        @Override
+        public Type getGenericComponentType() {
+            return this.componentType;
+        }
+
+        @Override
+        public String getTypeName() {
+            return this.componentType.getTypeName() + "[]";
+        }
+    }
+
 }
@@ -1,17 +1,31 @@
 package io.wispforest.owo.network.serialization;
 
-import com.google.common.collect.ImmutableMap;
 import io.wispforest.owo.Owo;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.minecraft.block.Block;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.effect.StatusEffect;
+import net.minecraft.fluid.Fluid;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3f;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.UnaryOperator;
 
 /**
  * A utility for serializing {@code record} classes into {@link PacketByteBuf}s.
@@ -22,6 +36,11 @@ import java.util.function.Function;
  * <p>
  * To serialize an instance use {@link #write(PacketByteBuf, Record)},
  * to read it back again use {@link #read(PacketByteBuf)}
+ * <p>
+ * Whenever possible, a dedicated serializer class with direct accessor
+ * and constructor calls is generated for the record type by {@link RecordSerializerCompiler}.
+ * Should that fail, or should it be disabled via {@code -Dowo.network.disableCompiledSerializers=true},
+ * (de-)serialization falls back to invoking the record's accessors and constructor reflectively
  *
  * @param <R> The type of record this serializer can handle
  */
@@ -30,16 +49,29 @@ public class RecordSerializer<R extends Record> {
 
     private static final Map<Class<?>, RecordSerializer<?>> SERIALIZERS = new HashMap<>();
 
-    private final Map<Function<R, ?>, PacketBufSerializer> adapters;
+    // component types whose values can be shared between threads without copying
+    private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(
+            Boolean.class, Integer.class, Long.class, Float.class, Double.class, Byte.class, Short.class, Character.class, Void.class,
+            String.class, UUID.class, Identifier.class, ChunkPos.class, Vec3d.class,
+            Item.class, Block.class, Fluid.class, EntityType.class, StatusEffect.class, Enchantment.class
+    );
+
     private final Class<R> recordClass;
-    private final Constructor<R> instanceCreator;
-    private final int fieldCount;
+    private final PacketBufSerializer[] adapters;
+    private final MethodHandle[] accessors;
+    private final MethodHandle instanceCreator;
+    private final @Nullable RecordSerializerCompiler.CompiledSerializer<R> compiled;
+
+    // null entries mark immutable components, a null array means the whole record is immutable
+    private final @Nullable UnaryOperator<Object>[] copiers;
 
-    private RecordSerializer(Class<R> recordClass, Constructor<R> instanceCreator, ImmutableMap<Function<R, ?>, PacketBufSerializer> adapters) {
+    private RecordSerializer(Class<R> recordClass, MethodHandle instanceCreator, MethodHandle[] accessors, PacketBufSerializer[] adapters, UnaryOperator<Object>[] copiers) {
         this.recordClass = recordClass;
         this.instanceCreator = instanceCreator;
+        this.accessors = accessors;
         this.adapters = adapters;
-        this.fieldCount = recordClass.getRecordComponents().length;
+        this.compiled = RecordSerializerCompiler.compile(recordClass, adapters);
+        this.copiers = Arrays.stream(copiers).allMatch(Objects::isNull) ? null : copiers;
     }
 
     /**
@@ -53,16 +85,20 @@ public class RecordSerializer<R extends Record> {
     public static <R extends Record> RecordSerializer<R> create(Class<R> recordClass) {
         if (SERIALIZERS.containsKey(recordClass)) return (RecordSerializer<R>) SERIALIZERS.get(recordClass);
 
-        final ImmutableMap.Builder<Function<R, ?>, PacketBufSerializer> adapters = new ImmutableMap.Builder<>();
-        final Class<?>[] canonicalConstructorArgs = new Class<?>[recordClass.getRecordComponents().length];
+        final RecordComponent[] components = recordClass.getRecordComponents();
+        final PacketBufSerializer[] adapters = new PacketBufSerializer[components.length];
+        final MethodHandle[] accessors = new MethodHandle[components.length];
+        final UnaryOperator<Object>[] copiers = new UnaryOperator[components.length];
+        final Class<?>[] canonicalConstructorArgs = new Class<?>[components.length];
 
         var lookup = MethodHandles.publicLookup();
-        for (int i = 0; i < recordClass.getRecordComponents().length; i++) {
+        for (int i = 0; i < components.length; i++) {
             try {
-                var component = recordClass.getRecordComponents()[i];
-                var handle = lookup.unreflect(component.getAccessor());
+                var component = components[i];
 
-                adapters.put(r -> getRecordEntry(r, handle), PacketBufSerializer.getGeneric(component.getGenericType()));
+                accessors[i] = lookup.unreflect(component.getAccessor());
+                adapters[i] = adapterFor(component);
+                copiers[i] = copierFor(component.getGenericType(), adapters[i]);
                 canonicalConstructorArgs[i] = component.getType();
             } catch (IllegalAccessException e) {
                 throw new IllegalStateException("Could not create method handle for record component");
@@ -70,30 +106,114 @@ public class RecordSerializer<R extends Record> {
         }
 
         try {
-            final var serializer = new RecordSerializer<>(recordClass, recordClass.getConstructor(canonicalConstructorArgs), adapters.build());
+            var constructor = lookup.unreflectConstructor(recordClass.getConstructor(canonicalConstructorArgs))
+                    .asSpreader(Object[].class, components.length);
+
+            final var serializer = new RecordSerializer<>(recordClass, constructor, accessors, adapters, copiers);
             SERIALIZERS.put(recordClass, serializer);
             return serializer;
-        } catch (NoSuchMethodException e) {
+        } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new IllegalStateException("Could not locate canonical record constructor");
         }
     }
 
+    private static PacketBufSerializer<?> adapterFor(RecordComponent component) {
+        if (!component.isAnnotationPresent(RetainedSlice.class)) return PacketBufSerializer.getGeneric(component.getGenericType());
+
+        if (component.getType() != PacketByteBuf.class) {
+            throw new IllegalStateException("@RetainedSlice component '" + component.getName() + "' must be of type PacketByteBuf");
+        }
+
+        return PacketBufSerializer.retainedSliceSerializer();
+    }
+
+    /**
+     * Creates a function which deep-copies values of the given type, or returns
+     * {@code null} if values of the type are immutable and can be shared as-is.
+     * Types without a dedicated copy are copied through their serializer
+     */
+    private static @Nullable UnaryOperator<Object> copierFor(Type type, PacketBufSerializer adapter) {
+        if (type instanceof ParameterizedType parameterized && parameterized.getRawType() == Optional.class) {
+            final var elementCopier = copierFor(parameterized.getActualTypeArguments()[0], PacketBufSerializer.getGeneric(parameterized.getActualTypeArguments()[0]));
+            return elementCopier == null ? null : value -> ((Optional<Object>) value).map(elementCopier);
+        }
+
+        if (!(type instanceof Class<?> klass)) return value -> copyThroughSerializer(value, adapter);
+
+        if (klass.isPrimitive() || klass.isEnum() || IMMUTABLE_TYPES.contains(klass)) return null;
+
+        if (klass == BlockPos.class) return value -> ((BlockPos) value).toImmutable();
+        if (klass == ItemStack.class) return value -> ((ItemStack) value).copy();
+        if (klass == NbtCompound.class) return value -> ((NbtCompound) value).copy();
+        if (klass == Text.class) return value -> ((Text) value).copy();
+        if (klass == Vec3f.class) return value -> ((Vec3f) value).copy();
+
+        if (Record.class.isAssignableFrom(klass)) {
+            final var serializer = create((Class<Record>) klass);
+            return serializer.copiers == null ? null : value -> serializer.copy((Record) value);
+        }
+
+        return value -> copyThroughSerializer(value, adapter);
+    }
+
+    private static Object copyThroughSerializer(@Nullable Object value, PacketBufSerializer adapter) {
+        if (value == null) return null;
+
+        final var buffer = PacketByteBufs.create();
+        try {
+            adapter.serializer().accept(buffer, value);
+            return adapter.deserializer().apply(buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Creates a copy of the given instance which shares no mutable state
+     * with it. Immutable components like strings, identifiers and block
+     * positions are shared, mutable ones like item stacks and NBT are copied
+     * - any component type without a dedicated copy is copied by serializing
+     * and deserializing it. If the record has no mutable components at all,
+     * the instance itself is returned
+     *
+     * @param instance The record instance to copy
+     * @return A copy of the instance which is safe to hand to another thread
+     */
+    public R copy(R instance) {
+        if (this.copiers == null) return instance;
+
+        Object[] messageContents = new Object[this.accessors.length];
+        for (int i = 0; i < this.accessors.length; i++) {
+            final var value = getRecordEntry(instance, this.accessors[i]);
+            messageContents[i] = this.copiers[i] == null || value == null ? value : this.copiers[i].apply(value);
+        }
+
+        try {
+            return (R) instanceCreator.invoke(messageContents);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to copy record", e);
+        }
+    }
+
     /**
      * Attempts to read a record of this serializer's
      * type from the given buffer
      *
      * @param buffer The buffer to read from
-     * @return The deserialized record
+     * @return The deserialized record, or {@code null} if the
+     * record's constructor threw - the error is logged
      */
     public R read(PacketByteBuf buffer) {
-        Object[] messageContents = new Object[fieldCount];
+        if (this.compiled != null) return this.compiled.read(buffer);
 
-        var index = new AtomicInteger();
-        adapters.forEach((rFunction, typeAdapter) -> messageContents[index.getAndIncrement()] = typeAdapter.deserializer().apply(buffer));
+        Object[] messageContents = new Object[this.adapters.length];
+        for (int i = 0; i < this.adapters.length; i++) {
+            messageContents[i] = this.adapters[i].deserializer().apply(buffer);
+        }
 
         try {
-            return instanceCreator.newInstance(messageContents);
-        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            return (R) instanceCreator.invoke(messageContents);
+        } catch (Throwable e) {
             Owo.LOGGER.error("Error while deserializing record", e);
         }
 
@@ -108,14 +228,117 @@ public class RecordSerializer<R extends Record> {
      * @param instance The record instance to serialize
      */
     public RecordSerializer<R> write(PacketByteBuf buffer, R instance) {
-        adapters.forEach((rFunction, typeAdapter) -> typeAdapter.serializer().accept(buffer, rFunction.apply(instance)));
+        if (this.compiled != null) {
+            this.compiled.write(buffer, instance);
+            return this;
+        }
+
+        for (int i = 0; i < this.adapters.length; i++) {
+            this.adapters[i].serializer().accept(buffer, getRecordEntry(instance, this.accessors[i]));
+        }
         return this;
     }
 
+    /**
+     * Compares the components of the given instances
+     *
+     * @param baseline The instance to compare against, or {@code null}
+     *                 if all components should be considered changed
+     * @param instance The instance to compare
+     * @return A bitmask containing a set bit for each
+     * component which differs between both instances
+     * @see #writeComponents(PacketByteBuf, Record, long)
+     */
+    public long diff(@Nullable R baseline, R instance) {
+        if (baseline == null) return this.fullMask();
+
+        long mask = 0;
+        for (int i = 0; i < this.accessors.length; i++) {
+            if (Objects.deepEquals(getRecordEntry(baseline, this.accessors[i]), getRecordEntry(instance, this.accessors[i]))) continue;
+            mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /**
+     * @return A bitmask with a set bit for every component of this serializer's record type
+     */
+    public long fullMask() {
+        return this.accessors.length == 64 ? -1L : (1L << this.accessors.length) - 1;
+    }
+
+    /**
+     * Writes only the components of the given instance whose bit is set
+     * in the given mask, in declaration order. The mask itself is not
+     * written and must be transferred separately
+     *
+     * @param buffer   The buffer to write to
+     * @param instance The record instance to serialize
+     * @param mask     The components to write
+     * @see #diff(Record, Record)
+     */
+    public void writeComponents(PacketByteBuf buffer, R instance, long mask) {
+        for (int i = 0; i < this.adapters.length; i++) {
+            if ((mask & (1L << i)) == 0) continue;
+            this.adapters[i].serializer().accept(buffer, getRecordEntry(instance, this.accessors[i]));
+        }
+    }
+
+    /**
+     * Reads the components written by {@link #writeComponents(PacketByteBuf, Record, long)}
+     * and fills all others in from the given baseline. The present components are
+     * always consumed from the buffer, even if the record cannot be reconstructed
+     *
+     * @param buffer   The buffer to read from
+     * @param mask     The components present in the buffer
+     * @param baseline The instance to take absent components from
+     * @return The reconstructed record, or {@code null} if components
+     * are absent and no baseline was given
+     */
+    public @Nullable R readComponents(PacketByteBuf buffer, long mask, @Nullable R baseline) {
+        Object[] messageContents = new Object[this.adapters.length];
+        boolean complete = true;
+
+        for (int i = 0; i < this.adapters.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                messageContents[i] = this.adapters[i].deserializer().apply(buffer);
+            } else if (baseline != null) {
+                messageContents[i] = getRecordEntry(baseline, this.accessors[i]);
+            } else {
+                complete = false;
+            }
+        }
+
+        if (!complete) return null;
+
+        try {
+            return (R) instanceCreator.invoke(messageContents);
+        } catch (Throwable e) {
+            Owo.LOGGER.error("Error while deserializing record", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The amount of components of this serializer's record type
+     */
+    public int componentCount() {
+        return this.adapters.length;
+    }
+
     public Class<R> getRecordClass() {
         return recordClass;
     }
 
+    /**
+     * @return {@code true} if this serializer uses a generated
+     * serializer class instead of reflective access
+     */
+    public boolean isCompiled() {
+        return this.compiled != null;
+    }
+
     private static <R extends Record> Object getRecordEntry(R instance, MethodHandle accessor) {
         try {
             return accessor.invoke(instance);
@@ -124,4 +347,3 @@ public class RecordSerializer<R extends Record> {
         }
     }
 }
-
@@ -0,0 +1,295 @@
+package io.wispforest.owo.network.serialization;
+
+import io.wispforest.owo.Owo;
+import net.minecraft.network.PacketByteBuf;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.util.Map;
+
+/**
+ * Generates a hidden serializer class per record type which calls the record's
+ * accessors and canonical constructor directly and writes primitive components
+ * without boxing them. Serializers for all other components are stored in fields of
+ * the generated class and invoked through their {@link PacketByteBuf.PacketWriter}
+ * and {@link PacketByteBuf.PacketReader} interfaces
+ * <p>
+ * Since Minecraft classes are remapped at runtime, the generated code never
+ * references Minecraft methods by name - primitives are routed through the
+ * static helpers in this class, which the JIT inlines into the generated methods
+ */
+@ApiStatus.Internal
+public final class RecordSerializerCompiler {
+
+    private static final boolean DISABLED = Boolean.getBoolean("owo.network.disableCompiledSerializers");
+
+    private static final String COMPILER_NAME = Type.getInternalName(RecordSerializerCompiler.class);
+    private static final String COMPILED_SERIALIZER_NAME = Type.getInternalName(CompiledSerializer.class);
+    private static final String PACKET_BUF_SERIALIZER_NAME = Type.getInternalName(PacketBufSerializer.class);
+    private static final String PACKET_BUF_DESCRIPTOR = Type.getDescriptor(PacketByteBuf.class);
+    private static final String WRITER_NAME = Type.getInternalName(PacketByteBuf.PacketWriter.class);
+    private static final String READER_NAME = Type.getInternalName(PacketByteBuf.PacketReader.class);
+
+    private static final Map<Class<?>, String> PRIMITIVE_HELPERS = Map.of(
+            boolean.class, "Boolean",
+            int.class, "Int",
+            long.class, "Long",
+            float.class, "Float",
+            double.class, "Double",
+            byte.class, "Byte",
+            short.class, "Short",
+            char.class, "Char"
+    );
+
+    private RecordSerializerCompiler() {}
+
+    /**
+     * Tries to generate a serializer class for the given record type
+     *
+     * @param recordClass The record type to generate a serializer for
+     * @param adapters    The serializers of the record's components, in declaration order
+     * @return The generated serializer, or {@code null} if generation is disabled or failed
+     */
+    @SuppressWarnings("unchecked")
+    public static <R extends Record> @Nullable CompiledSerializer<R> compile(Class<R> recordClass, PacketBufSerializer<?>[] adapters) {
+        if (DISABLED) return null;
+
+        try {
+            final var components = recordClass.getRecordComponents();
+            final var lookup = MethodHandles.privateLookupIn(recordClass, MethodHandles.lookup());
+
+            final var bytes = generate(recordClass, components, adapters);
+            final var serializerClass = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE).lookupClass();
+
+            return (CompiledSerializer<R>) lookup.findConstructor(serializerClass, MethodType.methodType(void.class, PacketBufSerializer[].class))
+                    .invoke(adapters);
+        } catch (Throwable e) {
+            Owo.debugWarn(Owo.LOGGER, "Could not generate serializer for record class '{}', falling back to reflection: {}", recordClass.getName(), e.toString());
+            return null;
+        }
+    }
+
+    private static byte[] generate(Class<?> recordClass, RecordComponent[] components, PacketBufSerializer<?>[] adapters) {
+        final var recordName = Type.getInternalName(recordClass);
+        final var className = recordName + "$OwoSerializer";
+        final var inlined = new boolean[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            var type = components[i].getType();
+            var adapter = adapters[i];
+
+            // only inline primitives which use the built-in format
+            inlined[i] = type.isPrimitive() && PacketBufSerializer.maybeGet(type).map(serializer -> serializer == adapter).orElse(false);
+        }
+
+        var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null, "java/lang/Object", new String[]{COMPILED_SERIALIZER_NAME});
+
+        // one writer and one reader field per non-primitive component
+        for (int i = 0; i < components.length; i++) {
+            if (inlined[i]) continue;
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "writer" + i, "L" + WRITER_NAME + ";", null, null).visitEnd();
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "reader" + i, "L" + READER_NAME + ";", null, null).visitEnd();
+        }
+
+        // constructor, unpacks the component serializers into fields
+        var init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([L" + PACKET_BUF_SERIALIZER_NAME + ";)V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        for (int i = 0; i < components.length; i++) {
+            if (inlined[i]) continue;
+
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            loadAdapter(init, i);
+            init.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PACKET_BUF_SERIALIZER_NAME, "serializer", "()L" + WRITER_NAME + ";", false);
+            init.visitFieldInsn(Opcodes.PUTFIELD, className, "writer" + i, "L" + WRITER_NAME + ";");
+
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            loadAdapter(init, i);
+            init.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PACKET_BUF_SERIALIZER_NAME, "deserializer", "()L" + READER_NAME + ";", false);
+            init.visitFieldInsn(Opcodes.PUTFIELD, className, "reader" + i, "L" + READER_NAME + ";");
+        }
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        // write(PacketByteBuf, Record)
+        var write = writer.visitMethod(Opcodes.ACC_PUBLIC, "write", "(" + PACKET_BUF_DESCRIPTOR + "Ljava/lang/Record;)V", null, null);
+        write.visitCode();
+        write.visitVarInsn(Opcodes.ALOAD, 2);
+        write.visitTypeInsn(Opcodes.CHECKCAST, recordName);
+        write.visitVarInsn(Opcodes.ASTORE, 3);
+        for (int i = 0; i < components.length; i++) {
+            var accessor = components[i].getAccessor();
+
+            if (inlined[i]) {
+                var componentType = Type.getType(components[i].getType());
+
+                write.visitVarInsn(Opcodes.ALOAD, 1);
+                write.visitVarInsn(Opcodes.ALOAD, 3);
+                write.visitMethodInsn(Opcodes.INVOKEVIRTUAL, recordName, accessor.getName(), Type.getMethodDescriptor(accessor), false);
+                write.visitMethodInsn(Opcodes.INVOKESTATIC, COMPILER_NAME, "write" + PRIMITIVE_HELPERS.get(components[i].getType()),
+                        "(" + PACKET_BUF_DESCRIPTOR + componentType.getDescriptor() + ")V", false);
+            } else {
+                write.visitVarInsn(Opcodes.ALOAD, 0);
+                write.visitFieldInsn(Opcodes.GETFIELD, className, "writer" + i, "L" + WRITER_NAME + ";");
+                write.visitVarInsn(Opcodes.ALOAD, 1);
+                write.visitVarInsn(Opcodes.ALOAD, 3);
+                write.visitMethodInsn(Opcodes.INVOKEVIRTUAL, recordName, accessor.getName(), Type.getMethodDescriptor(accessor), false);
+                write.visitMethodInsn(Opcodes.INVOKEINTERFACE, WRITER_NAME, "accept", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+            }
+        }
+        write.visitInsn(Opcodes.RETURN);
+        write.visitMaxs(0, 0);
+        write.visitEnd();
+
+        // read(PacketByteBuf), like the reflective path it logs constructor failures and returns null
+        var constructorStart = new Label();
+        var constructorEnd = new Label();
+        var constructorFailed = new Label();
+
+        var read = writer.visitMethod(Opcodes.ACC_PUBLIC, "read", "(" + PACKET_BUF_DESCRIPTOR + ")Ljava/lang/Record;", null, null);
+        read.visitCode();
+        read.visitTryCatchBlock(constructorStart, constructorEnd, constructorFailed, "java/lang/Throwable");
+        read.visitTypeInsn(Opcodes.NEW, recordName);
+        read.visitInsn(Opcodes.DUP);
+
+        var constructorArgs = new Type[components.length];
+        for (int i = 0; i < components.length; i++) {
+            var componentType = Type.getType(components[i].getType());
+            constructorArgs[i] = componentType;
+
+            if (inlined[i]) {
+                read.visitVarInsn(Opcodes.ALOAD, 1);
+                read.visitMethodInsn(Opcodes.INVOKESTATIC, COMPILER_NAME, "read" + PRIMITIVE_HELPERS.get(components[i].getType()),
+                        "(" + PACKET_BUF_DESCRIPTOR + ")" + componentType.getDescriptor(), false);
+            } else {
+                read.visitVarInsn(Opcodes.ALOAD, 0);
+                read.visitFieldInsn(Opcodes.GETFIELD, className, "reader" + i, "L" + READER_NAME + ";");
+                read.visitVarInsn(Opcodes.ALOAD, 1);
+                read.visitMethodInsn(Opcodes.INVOKEINTERFACE, READER_NAME, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+                read.visitTypeInsn(Opcodes.CHECKCAST, componentType.getInternalName());
+            }
+        }
+
+        read.visitLabel(constructorStart);
+        read.visitMethodInsn(Opcodes.INVOKESPECIAL, recordName, "<init>", Type.getMethodDescriptor(Type.VOID_TYPE, constructorArgs), false);
+        read.visitLabel(constructorEnd);
+        read.visitInsn(Opcodes.ARETURN);
+
+        // frames are not computed, the handler is the only branch target
+        read.visitLabel(constructorFailed);
+        read.visitFrame(Opcodes.F_FULL, 2, new Object[]{className, Type.getInternalName(PacketByteBuf.class)}, 1, new Object[]{"java/lang/Throwable"});
+        read.visitMethodInsn(Opcodes.INVOKESTATIC, COMPILER_NAME, "constructorFailed", "(Ljava/lang/Throwable;)V", false);
+        read.visitInsn(Opcodes.ACONST_NULL);
+        read.visitInsn(Opcodes.ARETURN);
+        read.visitMaxs(0, 0);
+        read.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void loadAdapter(MethodVisitor method, int index) {
+        method.visitVarInsn(Opcodes.ALOAD, 1);
+        method.visitLdcInsn(index);
+        method.visitInsn(Opcodes.AALOAD);
+    }
+
+    /**
+     * Called by generated serializers when the record's constructor
+     * throws, matching the reflective path of {@link RecordSerializer#read(PacketByteBuf)}
+     */
+    public static void constructorFailed(Throwable error) {
+        Owo.LOGGER.error("Error while deserializing record", error);
+    }
+
+    // -----------------
+    // Primitive helpers
+    // -----------------
+
+    public static void writeBoolean(PacketByteBuf buf, boolean value) {
+        buf.writeBoolean(value);
+    }
+
+    public static boolean readBoolean(PacketByteBuf buf) {
+        return buf.readBoolean();
+    }
+
+    public static void writeInt(PacketByteBuf buf, int value) {
+        buf.writeVarInt(value);
+    }
+
+    public static int readInt(PacketByteBuf buf) {
+        return buf.readVarInt();
+    }
+
+    public static void writeLong(PacketByteBuf buf, long value) {
+        buf.writeVarLong(value);
+    }
+
+    public static long readLong(PacketByteBuf buf) {
+        return buf.readVarLong();
+    }
+
+    public static void writeFloat(PacketByteBuf buf, float value) {
+        buf.writeFloat(value);
+    }
+
+    public static float readFloat(PacketByteBuf buf) {
+        return buf.readFloat();
+    }
+
+    public static void writeDouble(PacketByteBuf buf, double value) {
+        buf.writeDouble(value);
+    }
+
+    public static double readDouble(PacketByteBuf buf) {
+        return buf.readDouble();
+    }
+
+    public static void writeByte(PacketByteBuf buf, byte value) {
+        buf.writeByte(value);
+    }
+
+    public static byte readByte(PacketByteBuf buf) {
+        return buf.readByte();
+    }
+
+    public static void writeShort(PacketByteBuf buf, short value) {
+        buf.writeShort(value);
+    }
+
+    public static short readShort(PacketByteBuf buf) {
+        return buf.readShort();
+    }
+
+    public static void writeChar(PacketByteBuf buf, char value) {
+        buf.writeChar(value);
+    }
+
+    public static char readChar(PacketByteBuf buf) {
+        return buf.readChar();
+    }
+
+    /**
+     * The interface implemented by all generated serializer classes
+     *
+     * @param <R> The type of record the generated class serializes
+     */
+    @ApiStatus.Internal
+    public interface CompiledSerializer<R extends Record> {
+        void write(PacketByteBuf buf, R instance);
+
+        R read(PacketByteBuf buf);
+    }
+}
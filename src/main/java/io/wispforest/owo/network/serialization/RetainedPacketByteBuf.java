@@ -0,0 +1,71 @@
+package io.wispforest.owo.network.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.wispforest.owo.Owo;
+import net.minecraft.network.PacketByteBuf;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A retained slice handed out for {@link RetainedSlice} components. It
+ * releases its slice exactly once, no matter how often {@code release()}
+ * is called on the wrapper, and reports itself if it is garbage collected
+ * while still unreleased in development environments
+ */
+final class RetainedPacketByteBuf extends PacketByteBuf {
+
+    private static final Cleaner LEAK_DETECTOR = Owo.DEBUG ? Cleaner.create() : null;
+
+    private final SliceState state;
+
+    private RetainedPacketByteBuf(ByteBuf slice) {
+        super(slice);
+        this.state = new SliceState(slice, Owo.DEBUG ? new Throwable("Retained slice created here") : null);
+
+        if (LEAK_DETECTOR != null) LEAK_DETECTOR.register(this, this.state);
+    }
+
+    /**
+     * Reads the given amount of bytes from the given buffer as a retained slice
+     */
+    static PacketByteBuf read(PacketByteBuf buf, int length) {
+        return new RetainedPacketByteBuf(buf.readRetainedSlice(length));
+    }
+
+    @Override
+    public boolean release() {
+        return this.state.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        if (decrement != 1) throw new IllegalArgumentException("Retained slices can only be released once");
+        return this.state.release();
+    }
+
+    private static final class SliceState implements Runnable {
+        private final ByteBuf slice;
+        private final Throwable creationTrace;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private SliceState(ByteBuf slice, Throwable creationTrace) {
+            this.slice = slice;
+            this.creationTrace = creationTrace;
+        }
+
+        private boolean release() {
+            if (!this.released.compareAndSet(false, true)) return false;
+            return this.slice.release();
+        }
+
+        // invoked by the cleaner once the wrapper is unreachable
+        @Override
+        public void run() {
+            if (this.released.get()) return;
+
+            Owo.LOGGER.error("A retained PacketByteBuf slice was garbage collected without being released", this.creationTrace);
+            this.release();
+        }
+    }
+}
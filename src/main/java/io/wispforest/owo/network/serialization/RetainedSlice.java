@@ -0,0 +1,23 @@
+package io.wispforest.owo.network.serialization;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link net.minecraft.network.PacketByteBuf} record component which
+ * should be read without copying. Instead of a fresh buffer, the deserialized
+ * record then holds a retained slice of the buffer it was read from
+ * <p>
+ * <b>Whoever receives the record owns the slice and must {@code release()}
+ * it once done</b> - until then, the memory of the entire incoming packet
+ * stays alive. In development environments, slices which are garbage
+ * collected without having been released are reported as leaks
+ * <p>
+ * The wire format is identical to that of a plain {@code PacketByteBuf}
+ * component, so adding or removing this annotation does not affect peers
+ */
+@Target(ElementType.RECORD_COMPONENT)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetainedSlice {}
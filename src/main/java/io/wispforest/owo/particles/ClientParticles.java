@@ -1,12 +1,8 @@
 package io.wispforest.owo.particles;
 
-import io.wispforest.owo.util.VectorRandomUtils;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.particle.Particle;
 import net.minecraft.particle.ParticleEffect;
-import net.minecraft.particle.ParticleTypes;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
@@ -15,18 +11,17 @@ import net.minecraft.world.World;
 /**
  * A wrapper for vanilla's terrible particle system that allows for easier
  * and more complex multi-particle operations
+ * <p>
+ * This is a static front-end for a single, shared {@link ParticleEmitter} which
+ * is reset after every operation. Code which spawns the same effect repeatedly
+ * or could run concurrently with other callers should use its own emitter instead
  */
 @Environment(EnvType.CLIENT)
 public class ClientParticles {
 
-    private static int particleCount = 1;
+    private static final ParticleEmitter EMITTER = new ParticleEmitter();
     private static boolean persist = false;
 
-    private static Vec3d velocity = new Vec3d(0, 0, 0);
-    private static boolean randomizeVelocity = false;
-    private static double randomVelocityScalar = 0;
-    private static Direction.Axis randomizationAxis = null;
-
     /**
      * Marks the values set by {@link ClientParticles#setParticleCount(int)} and {@link ClientParticles#setVelocity(Vec3d)} to be persistent
      */
@@ -41,7 +36,7 @@ public class ClientParticles {
      * </b>
      */
     public static void setParticleCount(int particleCount) {
-        ClientParticles.particleCount = particleCount;
+        EMITTER.count(particleCount);
     }
 
     /**
@@ -51,7 +46,7 @@ public class ClientParticles {
      * </b>
      */
     public static void setVelocity(Vec3d velocity) {
-        ClientParticles.velocity = velocity;
+        EMITTER.velocity(velocity);
     }
 
     /**
@@ -64,9 +59,7 @@ public class ClientParticles {
      *               nominally range from -0.5 to 0.5 on each axis
      */
     public static void randomizeVelocity(double scalar) {
-        randomizeVelocity = true;
-        randomVelocityScalar = scalar;
-        randomizationAxis = null;
+        EMITTER.randomizeVelocity(scalar);
     }
 
     /**
@@ -80,9 +73,7 @@ public class ClientParticles {
      * @param axis   The axis on which to apply random velocity
      */
     public static void randomizeVelocityOnAxis(double scalar, Direction.Axis axis) {
-        randomizeVelocity = true;
-        randomVelocityScalar = scalar;
-        randomizationAxis = axis;
+        EMITTER.randomizeVelocityOnAxis(scalar, axis);
     }
 
     /**
@@ -96,27 +87,7 @@ public class ClientParticles {
     private static void clearState() {
         if (persist) return;
 
-        particleCount = 1;
-        velocity = new Vec3d(0, 0, 0);
-
-        randomizeVelocity = false;
-    }
-
-    private static void addParticle(ParticleEffect particle, World world, Vec3d location) {
-        if (randomizeVelocity) {
-            if (randomizationAxis == null) {
-                velocity = VectorRandomUtils.getRandomOffset(world, Vec3d.ZERO, randomVelocityScalar);
-            } else {
-                final var stopIt_getSomeHelp = (world.random.nextDouble() * 2 - 1) * randomVelocityScalar;
-                velocity = switch (randomizationAxis) {
-                    case X -> new Vec3d(stopIt_getSomeHelp, 0, 0);
-                    case Y -> new Vec3d(0, stopIt_getSomeHelp, 0);
-                    case Z -> new Vec3d(0, 0, stopIt_getSomeHelp);
-                };
-            }
-        }
-
-        world.addParticle(particle, location.x, location.y, location.z, velocity.x, velocity.y, velocity.z);
+        EMITTER.reset();
     }
 
     /**
@@ -128,13 +99,7 @@ public class ClientParticles {
      * @param deviation The maximum deviation from the center of pos
      */
     public static void spawnCenteredOnBlock(ParticleEffect particle, World world, BlockPos pos, double deviation) {
-        Vec3d location;
-
-        for (int i = 0; i < particleCount; i++) {
-            location = VectorRandomUtils.getRandomCenteredOnBlock(world, pos, deviation);
-            addParticle(particle, world, location);
-        }
-
+        EMITTER.spawnCenteredOnBlock(particle, world, pos, deviation);
         clearState();
     }
 
@@ -146,13 +111,7 @@ public class ClientParticles {
      * @param pos      The block to spawn particles in
      */
     public static void spawnWithinBlock(ParticleEffect particle, World world, BlockPos pos) {
-        Vec3d location;
-
-        for (int i = 0; i < particleCount; i++) {
-            location = VectorRandomUtils.getRandomWithinBlock(world, pos);
-            addParticle(particle, world, location);
-        }
-
+        EMITTER.spawnWithinBlock(particle, world, pos);
         clearState();
     }
 
@@ -166,15 +125,7 @@ public class ClientParticles {
      * @param deviation The scalar for random distribution
      */
     public static void spawnWithOffsetFromBlock(ParticleEffect particle, World world, BlockPos pos, Vec3d offset, double deviation) {
-        Vec3d location;
-        offset = offset.add(Vec3d.of(pos));
-
-        for (int i = 0; i < particleCount; i++) {
-            location = VectorRandomUtils.getRandomOffset(world, offset, deviation);
-
-            addParticle(particle, world, location);
-        }
-
+        EMITTER.spawnWithOffsetFromBlock(particle, world, pos, offset, deviation);
         clearState();
     }
 
@@ -187,13 +138,7 @@ public class ClientParticles {
      * @param deviation The scalar from random distribution
      */
     public static void spawn(ParticleEffect particle, World world, Vec3d pos, double deviation) {
-        Vec3d location;
-
-        for (int i = 0; i < particleCount; i++) {
-            location = VectorRandomUtils.getRandomOffset(world, pos, deviation);
-            addParticle(particle, world, location);
-        }
-
+        EMITTER.spawn(particle, world, pos, deviation);
         clearState();
     }
 
@@ -208,13 +153,7 @@ public class ClientParticles {
      * @param deviationZ The scalar from random distribution on z
      */
     public static void spawnPrecise(ParticleEffect particle, World world, Vec3d pos, double deviationX, double deviationY, double deviationZ) {
-        Vec3d location;
-
-        for (int i = 0; i < particleCount; i++) {
-            location = VectorRandomUtils.getRandomOffsetSpecific(world, pos, deviationX, deviationY, deviationZ);
-            addParticle(particle, world, location);
-        }
-
+        EMITTER.spawnPrecise(particle, world, pos.x, pos.y, pos.z, deviationX, deviationY, deviationZ);
         clearState();
     }
 
@@ -227,15 +166,7 @@ public class ClientParticles {
      * @param deviation   The scalar for random distribution around {@code origin}
      */
     public static void spawnEnchantParticles(World world, Vec3d origin, Vec3d destination, float deviation) {
-
-        Vec3d location;
-        Vec3d particleVector = origin.subtract(destination);
-
-        for (int i = 0; i < particleCount; i++) {
-            location = VectorRandomUtils.getRandomOffset(world, particleVector, deviation);
-            world.addParticle(ParticleTypes.ENCHANT, destination.x, destination.y, destination.z, location.x, location.y, location.z);
-        }
-
+        EMITTER.spawnEnchantParticles(world, origin, destination, deviation);
         clearState();
     }
 
@@ -246,11 +177,8 @@ public class ClientParticles {
      * @param pos          The position to spawn at
      * @param maxAge       The maxAge to set for the spawned particle
      */
-    @SuppressWarnings("ConstantConditions")
     public static <T extends ParticleEffect> void spawnWithMaxAge(T particleType, Vec3d pos, int maxAge) {
-        Particle particle = MinecraftClient.getInstance().particleManager.addParticle(particleType, pos.x, pos.y, pos.z, velocity.x, velocity.y, velocity.z);
-        particle.setMaxAge(maxAge);
-
+        EMITTER.spawnWithMaxAge(particleType, pos.x, pos.y, pos.z, maxAge);
         clearState();
     }
 
@@ -264,7 +192,7 @@ public class ClientParticles {
      * @param deviation A random offset from the line that particles can have
      */
     public static void spawnLine(ParticleEffect particle, World world, Vec3d start, Vec3d end, float deviation) {
-        spawnLineInner(particle, world, start, end, deviation);
+        EMITTER.spawnLine(particle, world, start, end, deviation);
         clearState();
     }
 
@@ -279,37 +207,22 @@ public class ClientParticles {
      * @param deviation A random offset from the line that particles can have
      */
     public static void spawnCubeOutline(ParticleEffect particle, World world, Vec3d origin, float size, float deviation) {
-
-        spawnLineInner(particle, world, origin, origin.add(size, 0, 0), deviation);
-        spawnLineInner(particle, world, origin.add(size, 0, 0), origin.add(size, 0, size), deviation);
-
-        spawnLineInner(particle, world, origin, origin.add(0, 0, size), deviation);
-        spawnLineInner(particle, world, origin.add(0, 0, size), origin.add(size, 0, size), deviation);
-
-        origin = origin.add(0, size, 0);
-
-        spawnLineInner(particle, world, origin, origin.add(size, 0, 0), deviation);
-        spawnLineInner(particle, world, origin.add(size, 0, 0), origin.add(size, 0, size), deviation);
-
-        spawnLineInner(particle, world, origin, origin.add(0, 0, size), deviation);
-        spawnLineInner(particle, world, origin.add(0, 0, size), origin.add(size, 0, size), deviation);
-
-        spawnLineInner(particle, world, origin, origin.add(0, -size, 0), deviation);
-        spawnLineInner(particle, world, origin.add(size, 0, 0), origin.add(size, -size, 0), deviation);
-        spawnLineInner(particle, world, origin.add(0, 0, size), origin.add(0, -size, size), deviation);
-        spawnLineInner(particle, world, origin.add(size, 0, size), origin.add(size, -size, size), deviation);
-
+        EMITTER.spawnCubeOutline(particle, world, origin, size, deviation);
         clearState();
     }
 
-    private static void spawnLineInner(ParticleEffect particle, World world, Vec3d start, Vec3d end, float deviation) {
-        Vec3d increment = end.subtract(start).multiply(1f / (float) particleCount);
-
-        for (int i = 0; i < particleCount; i++) {
-            start = VectorRandomUtils.getRandomOffset(world, start, deviation);
-            addParticle(particle, world, start);
-            start = start.add(increment);
-        }
+    /**
+     * Spawns particles along the given shape, see {@link ParticleEmitter#spawnShape(ParticleEffect, World, ParticleShape, double, double, double, double, double, double, double)}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param shape     The shape to spawn particles along
+     * @param pos       The position to move the shape's origin to
+     * @param scale     The factor to scale the shape by on all axes
+     * @param deviation A random offset from the shape that particles can have
+     */
+    public static void spawnShape(ParticleEffect particle, World world, ParticleShape shape, Vec3d pos, double scale, double deviation) {
+        EMITTER.spawnShape(particle, world, shape, pos.x, pos.y, pos.z, scale, deviation);
+        clearState();
     }
-
 }
@@ -0,0 +1,368 @@
+package io.wispforest.owo.particles;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.particle.Particle;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.particle.ParticleTypes;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A reusable, configurable source of client-side particles. Unlike {@link ClientParticles},
+ * the configuration of an emitter is kept until it is changed, so an emitter can be set
+ * up once and then used for every spawn of an effect
+ * <p>
+ * Emitting particles does not allocate - positions and velocities are computed in
+ * primitive coordinates and passed straight to {@link World#addParticle(ParticleEffect, double, double, double, double, double, double)}.
+ * Emitters are not thread-safe, each caller should use their own
+ */
+@Environment(EnvType.CLIENT)
+public class ParticleEmitter {
+
+    private int count = 1;
+
+    private double velocityX = 0, velocityY = 0, velocityZ = 0;
+    private boolean randomizeVelocity = false;
+    private double randomVelocityScalar = 0;
+    private @Nullable Direction.Axis randomizationAxis = null;
+
+    // the position of the particle currently being emitted
+    private double x, y, z;
+
+    /**
+     * @param count How many particles to spawn per operation
+     * @return This emitter
+     */
+    public ParticleEmitter count(int count) {
+        this.count = count;
+        return this;
+    }
+
+    /**
+     * @return How many particles this emitter spawns per operation
+     */
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * Sets the velocity added to each spawned particle, which is
+     * ignored while velocity randomization is enabled
+     *
+     * @return This emitter
+     */
+    public ParticleEmitter velocity(double x, double y, double z) {
+        this.velocityX = x;
+        this.velocityY = y;
+        this.velocityZ = z;
+        return this;
+    }
+
+    /**
+     * Sets the velocity added to each spawned particle, which is
+     * ignored while velocity randomization is enabled
+     *
+     * @return This emitter
+     */
+    public ParticleEmitter velocity(Vec3d velocity) {
+        return this.velocity(velocity.x, velocity.y, velocity.z);
+    }
+
+    /**
+     * Makes this emitter use a random velocity for each particle
+     *
+     * @param scalar The scalar to use for the generated velocities which
+     *               nominally range from -0.5 to 0.5 on each axis
+     * @return This emitter
+     */
+    public ParticleEmitter randomizeVelocity(double scalar) {
+        this.randomizeVelocity = true;
+        this.randomVelocityScalar = scalar;
+        this.randomizationAxis = null;
+        return this;
+    }
+
+    /**
+     * Makes this emitter use a random velocity for each particle
+     *
+     * @param scalar The scalar to use for the generated velocities which
+     *               nominally range from -1 to 1 on the given axis
+     * @param axis   The axis on which to apply random velocity
+     * @return This emitter
+     */
+    public ParticleEmitter randomizeVelocityOnAxis(double scalar, Direction.Axis axis) {
+        this.randomizeVelocity = true;
+        this.randomVelocityScalar = scalar;
+        this.randomizationAxis = axis;
+        return this;
+    }
+
+    /**
+     * Resets this emitter to spawning one particle
+     * per operation without any velocity
+     *
+     * @return This emitter
+     */
+    public ParticleEmitter reset() {
+        this.count = 1;
+        this.velocityX = this.velocityY = this.velocityZ = 0;
+        this.randomizeVelocity = false;
+        return this;
+    }
+
+    /**
+     * Spawns particles with a maximum offset of {@code deviation} from the center of {@code pos}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param pos       The block to center on
+     * @param deviation The maximum deviation from the center of pos
+     */
+    public void spawnCenteredOnBlock(ParticleEffect particle, World world, BlockPos pos, double deviation) {
+        this.spawn(particle, world, pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5, deviation);
+    }
+
+    /**
+     * Spawns particles randomly distributed within {@code pos}
+     *
+     * @param particle The particle to spawn
+     * @param world    The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param pos      The block to spawn particles in
+     */
+    public void spawnWithinBlock(ParticleEffect particle, World world, BlockPos pos) {
+        this.spawn(particle, world, pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5, .5);
+    }
+
+    /**
+     * Spawns particles with a maximum offset of {@code deviation} from {@code pos + offset}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param pos       The base position
+     * @param offset    The offset from {@code pos}
+     * @param deviation The scalar for random distribution
+     */
+    public void spawnWithOffsetFromBlock(ParticleEffect particle, World world, BlockPos pos, Vec3d offset, double deviation) {
+        this.spawn(particle, world, pos.getX() + offset.x, pos.getY() + offset.y, pos.getZ() + offset.z, deviation);
+    }
+
+    /**
+     * Spawns particles at the given location with a maximum offset of {@code deviation}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param pos       The base position
+     * @param deviation The scalar for random distribution
+     */
+    public void spawn(ParticleEffect particle, World world, Vec3d pos, double deviation) {
+        this.spawn(particle, world, pos.x, pos.y, pos.z, deviation);
+    }
+
+    /**
+     * Spawns particles at the given location with a maximum offset of {@code deviation}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param deviation The scalar for random distribution
+     */
+    public void spawn(ParticleEffect particle, World world, double x, double y, double z, double deviation) {
+        this.spawnPrecise(particle, world, x, y, z, deviation, deviation, deviation);
+    }
+
+    /**
+     * Spawns particles at the given location with a maximum offset of {@code deviation}
+     *
+     * @param particle   The particle to spawn
+     * @param world      The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param deviationX The scalar for random distribution on x
+     * @param deviationY The scalar for random distribution on y
+     * @param deviationZ The scalar for random distribution on z
+     */
+    public void spawnPrecise(ParticleEffect particle, World world, double x, double y, double z, double deviationX, double deviationY, double deviationZ) {
+        for (int i = 0; i < this.count; i++) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+
+            this.offsetRandomly(world, deviationX, deviationY, deviationZ);
+            this.emit(particle, world);
+        }
+    }
+
+    /**
+     * Spawns enchant particles travelling from origin to destination
+     *
+     * @param world       The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param origin      The origin of the particle stream
+     * @param destination The destination of the particle stream
+     * @param deviation   The scalar for random distribution around {@code origin}
+     */
+    public void spawnEnchantParticles(World world, Vec3d origin, Vec3d destination, float deviation) {
+        for (int i = 0; i < this.count; i++) {
+            // enchant particles fly towards their spawn position, the velocity is where they start
+            this.x = origin.x - destination.x;
+            this.y = origin.y - destination.y;
+            this.z = origin.z - destination.z;
+
+            this.offsetRandomly(world, deviation, deviation, deviation);
+            world.addParticle(ParticleTypes.ENCHANT, destination.x, destination.y, destination.z, this.x, this.y, this.z);
+        }
+    }
+
+    /**
+     * Spawns a particle at the given location with a lifetime of {@code maxAge}
+     *
+     * @param particleType The type of the particle to spawn
+     * @param maxAge       The maxAge to set for the spawned particle
+     */
+    public void spawnWithMaxAge(ParticleEffect particleType, double x, double y, double z, int maxAge) {
+        Particle particle = MinecraftClient.getInstance().particleManager.addParticle(particleType, x, y, z, this.velocityX, this.velocityY, this.velocityZ);
+        if (particle != null) particle.setMaxAge(maxAge);
+    }
+
+    /**
+     * Spawns a line of particles going from {@code start} to {@code end}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param start     The line's origin
+     * @param end       The line's end point
+     * @param deviation A random offset from the line that particles can have
+     */
+    public void spawnLine(ParticleEffect particle, World world, Vec3d start, Vec3d end, float deviation) {
+        this.spawnLine(particle, world, start.x, start.y, start.z, end.x, end.y, end.z, deviation);
+    }
+
+    /**
+     * Spawns a line of particles going from {@code start} to {@code end}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param deviation A random offset from the line that particles can have
+     */
+    public void spawnLine(ParticleEffect particle, World world, double startX, double startY, double startZ, double endX, double endY, double endZ, float deviation) {
+        final float step = 1f / (float) this.count;
+
+        final double incrementX = (endX - startX) * step;
+        final double incrementY = (endY - startY) * step;
+        final double incrementZ = (endZ - startZ) * step;
+
+        this.x = startX;
+        this.y = startY;
+        this.z = startZ;
+
+        // the random offsets accumulate along the line, which makes it wander slightly
+        for (int i = 0; i < this.count; i++) {
+            this.offsetRandomly(world, deviation, deviation, deviation);
+            this.emit(particle, world);
+
+            this.x += incrementX;
+            this.y += incrementY;
+            this.z += incrementZ;
+        }
+    }
+
+    /**
+     * Spawns a cube outline starting at {@code origin} and expanding by {@code size} in positive
+     * direction on all axis
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param origin    The cube's origin
+     * @param size      The cube's side length
+     * @param deviation A random offset from the line that particles can have
+     */
+    public void spawnCubeOutline(ParticleEffect particle, World world, Vec3d origin, float size, float deviation) {
+        this.spawnCubeOutline(particle, world, origin.x, origin.y, origin.z, size, deviation);
+    }
+
+    /**
+     * Spawns a cube outline starting at the given origin and expanding by {@code size} in positive
+     * direction on all axis
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param size      The cube's side length
+     * @param deviation A random offset from the line that particles can have
+     */
+    public void spawnCubeOutline(ParticleEffect particle, World world, double x, double y, double z, float size, float deviation) {
+        this.spawnShape(particle, world, ParticleShapes.CUBE_OUTLINE, x, y, z, size, size, size, deviation);
+    }
+
+    /**
+     * Spawns particles along the given shape. The shape is sampled with this emitter's
+     * particle count, the resulting points are cached by {@link ParticleShapes}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param shape     The shape to spawn particles along
+     * @param scale     The factor to scale the shape by on all axes
+     * @param deviation A random offset from the shape that particles can have
+     */
+    public void spawnShape(ParticleEffect particle, World world, ParticleShape shape, double x, double y, double z, double scale, double deviation) {
+        this.spawnShape(particle, world, shape, x, y, z, scale, scale, scale, deviation);
+    }
+
+    /**
+     * Spawns particles along the given shape. The shape is sampled with this emitter's
+     * particle count, the resulting points are cached by {@link ParticleShapes}
+     *
+     * @param particle  The particle to spawn
+     * @param world     The world to spawn the particles in, must be {@link net.minecraft.client.world.ClientWorld}
+     * @param shape     The shape to spawn particles along
+     * @param scaleX    The factor to scale the shape by on the x-axis
+     * @param scaleY    The factor to scale the shape by on the y-axis
+     * @param scaleZ    The factor to scale the shape by on the z-axis
+     * @param deviation A random offset from the shape that particles can have
+     */
+    public void spawnShape(ParticleEffect particle, World world, ParticleShape shape, double x, double y, double z, double scaleX, double scaleY, double scaleZ, double deviation) {
+        final var points = ParticleShapes.samples(shape, this.count);
+
+        for (int i = 0; i < points.length; i += 3) {
+            this.x = x + points[i] * scaleX;
+            this.y = y + points[i + 1] * scaleY;
+            this.z = z + points[i + 2] * scaleZ;
+
+            this.offsetRandomly(world, deviation, deviation, deviation);
+            this.emit(particle, world);
+        }
+    }
+
+    private void offsetRandomly(World world, double deviationX, double deviationY, double deviationZ) {
+        final var random = world.getRandom();
+
+        this.x += (random.nextDouble() - .5) * deviationX;
+        this.y += (random.nextDouble() - .5) * deviationY;
+        this.z += (random.nextDouble() - .5) * deviationZ;
+    }
+
+    private void emit(ParticleEffect particle, World world) {
+        if (!this.randomizeVelocity) {
+            world.addParticle(particle, this.x, this.y, this.z, this.velocityX, this.velocityY, this.velocityZ);
+            return;
+        }
+
+        final var random = world.getRandom();
+
+        if (this.randomizationAxis == null) {
+            world.addParticle(particle, this.x, this.y, this.z,
+                    (random.nextDouble() - .5) * this.randomVelocityScalar,
+                    (random.nextDouble() - .5) * this.randomVelocityScalar,
+                    (random.nextDouble() - .5) * this.randomVelocityScalar
+            );
+        } else {
+            final double velocity = (random.nextDouble() * 2 - 1) * this.randomVelocityScalar;
+
+            switch (this.randomizationAxis) {
+                case X -> world.addParticle(particle, this.x, this.y, this.z, velocity, 0, 0);
+                case Y -> world.addParticle(particle, this.x, this.y, this.z, 0, velocity, 0);
+                case Z -> world.addParticle(particle, this.x, this.y, this.z, 0, 0, velocity);
+            }
+        }
+    }
+}
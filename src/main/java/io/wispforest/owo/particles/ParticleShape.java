@@ -0,0 +1,24 @@
+package io.wispforest.owo.particles;
+
+/**
+ * A shape which particles can be spawned along, see {@link ParticleEmitter#spawnShape(net.minecraft.particle.ParticleEffect, net.minecraft.world.World, ParticleShape, double, double, double, double, double, double, double)}
+ * <p>
+ * Shapes produce their sample points in unit space, which are then scaled on each axis
+ * and moved to the spawn position. As samples are cached by {@link ParticleShapes},
+ * sampling must be deterministic - the same count must always produce the same points
+ */
+@FunctionalInterface
+public interface ParticleShape {
+
+    /**
+     * Computes the sample points of this shape
+     *
+     * @param count The amount of particles requested, shapes
+     *              which consist of multiple parts may interpret
+     *              this per part - like per edge of a cube
+     * @return The points as consecutive {@code x, y, z} triples,
+     * the length of the array must be a multiple of 3
+     */
+    double[] sample(int count);
+
+}
@@ -0,0 +1,206 @@
+package io.wispforest.owo.particles;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.MathHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The built-in {@link ParticleShape}s, a registry for custom shapes
+ * and the cache of sample points for every shape and particle count
+ */
+public final class ParticleShapes {
+
+    /**
+     * Shapes which have been sampled with more distinct counts than
+     * this are not cached anymore beyond those already computed
+     */
+    private static final int MAX_CACHED_COUNTS = 64;
+
+    /**
+     * Samples with more points than this are never cached
+     */
+    private static final int MAX_CACHED_POINTS = 65536;
+
+    private static final Map<Identifier, ParticleShape> REGISTERED_SHAPES = new HashMap<>();
+    // weakly keyed, so that the samples of shapes which are created on the fly disappear along with them
+    private static final Map<ParticleShape, Int2ObjectMap<double[]>> SAMPLES = new WeakHashMap<>();
+
+    /**
+     * {@code count} points from {@code (0, 0, 0)} towards {@code (1, 1, 1)}, excluding the end
+     * point - scale this by the difference between the start and end of the desired line
+     */
+    public static final ParticleShape LINE = register(new Identifier("owo", "line"), count -> {
+        final var points = new double[count * 3];
+        for (int i = 0; i < count; i++) {
+            points[i * 3] = points[i * 3 + 1] = points[i * 3 + 2] = i / (double) count;
+        }
+        return points;
+    });
+
+    /**
+     * The edges of the cube from {@code (0, 0, 0)} to {@code (1, 1, 1)}, with {@code count} points per edge
+     */
+    public static final ParticleShape CUBE_OUTLINE = register(new Identifier("owo", "cube_outline"), count -> {
+        final var edges = new double[][]{
+                {0, 0, 0, 1, 0, 0}, {1, 0, 0, 1, 0, 1}, {0, 0, 0, 0, 0, 1}, {0, 0, 1, 1, 0, 1},
+                {0, 1, 0, 1, 1, 0}, {1, 1, 0, 1, 1, 1}, {0, 1, 0, 0, 1, 1}, {0, 1, 1, 1, 1, 1},
+                {0, 1, 0, 0, 0, 0}, {1, 1, 0, 1, 0, 0}, {0, 1, 1, 0, 0, 1}, {1, 1, 1, 1, 0, 1}
+        };
+
+        final var points = new double[edges.length * count * 3];
+        int index = 0;
+
+        for (var edge : edges) {
+            for (int i = 0; i < count; i++) {
+                final double t = i / (double) count;
+                points[index++] = MathHelper.lerp(t, edge[0], edge[3]);
+                points[index++] = MathHelper.lerp(t, edge[1], edge[4]);
+                points[index++] = MathHelper.lerp(t, edge[2], edge[5]);
+            }
+        }
+
+        return points;
+    });
+
+    /**
+     * {@code count} points evenly distributed over the surface
+     * of the sphere with radius 1 around {@code (0, 0, 0)}
+     */
+    public static final ParticleShape SPHERE = register(new Identifier("owo", "sphere"), count -> {
+        final var points = new double[count * 3];
+        final double goldenAngle = Math.PI * (3 - Math.sqrt(5));
+
+        for (int i = 0; i < count; i++) {
+            final double y = count == 1 ? 0 : 1 - (i / (double) (count - 1)) * 2;
+            final double radius = Math.sqrt(1 - y * y);
+            final double angle = goldenAngle * i;
+
+            points[i * 3] = Math.cos(angle) * radius;
+            points[i * 3 + 1] = y;
+            points[i * 3 + 2] = Math.sin(angle) * radius;
+        }
+
+        return points;
+    });
+
+    /**
+     * {@code count} points on the circle with radius 1
+     * around {@code (0, 0, 0)} in the horizontal plane
+     */
+    public static final ParticleShape CIRCLE = register(new Identifier("owo", "circle"), count -> {
+        final var points = new double[count * 3];
+
+        for (int i = 0; i < count; i++) {
+            final double angle = (i / (double) count) * Math.PI * 2;
+            points[i * 3] = Math.cos(angle);
+            points[i * 3 + 2] = Math.sin(angle);
+        }
+
+        return points;
+    });
+
+    /**
+     * A helix with radius 1 around the y-axis, rising from
+     * {@code y = 0} to {@code y = 1} over a single turn
+     */
+    public static final ParticleShape HELIX = register(new Identifier("owo", "helix"), helix(1));
+
+    private ParticleShapes() {}
+
+    /**
+     * Creates a helix with radius 1 around the y-axis which rises from {@code y = 0}
+     * to {@code y = 1} over the given amount of turns. The returned shape should be
+     * stored and reused, since samples are cached per shape instance - and only for
+     * as long as that instance is referenced
+     *
+     * @param turns How many times the helix winds around the y-axis
+     * @return The created shape
+     */
+    public static ParticleShape helix(double turns) {
+        return count -> {
+            final var points = new double[count * 3];
+
+            for (int i = 0; i < count; i++) {
+                final double progress = count == 1 ? 0 : i / (double) (count - 1);
+                final double angle = progress * turns * Math.PI * 2;
+
+                points[i * 3] = Math.cos(angle);
+                points[i * 3 + 1] = progress;
+                points[i * 3 + 2] = Math.sin(angle);
+            }
+
+            return points;
+        };
+    }
+
+    /**
+     * Registers a shape under the given id, so that it
+     * can be looked up by other mods or from data
+     *
+     * @param id    The id to register the shape under
+     * @param shape The shape to register
+     * @return {@code shape}
+     */
+    public static <S extends ParticleShape> S register(Identifier id, S shape) {
+        synchronized (REGISTERED_SHAPES) {
+            if (REGISTERED_SHAPES.containsKey(id)) {
+                throw new IllegalStateException("Particle shape with id '" + id + "' was already registered");
+            }
+
+            REGISTERED_SHAPES.put(id, shape);
+        }
+
+        return shape;
+    }
+
+    /**
+     * @param id The id to look up
+     * @return The shape registered under the given id, or {@code null} if there is none
+     */
+    public static @Nullable ParticleShape get(Identifier id) {
+        synchronized (REGISTERED_SHAPES) {
+            return REGISTERED_SHAPES.get(id);
+        }
+    }
+
+    /**
+     * Gets the sample points of the given shape for the given particle count,
+     * computing them only the first time this combination is requested
+     *
+     * @param shape The shape to sample
+     * @param count The particle count to sample the shape with
+     * @return The sample points, see {@link ParticleShape#sample(int)}. This
+     * array is shared between all callers and must not be modified
+     */
+    public static double[] samples(ParticleShape shape, int count) {
+        if (count <= 0) return new double[0];
+
+        synchronized (SAMPLES) {
+            var shapeSamples = SAMPLES.get(shape);
+            if (shapeSamples == null) {
+                shapeSamples = new Int2ObjectOpenHashMap<>();
+                SAMPLES.put(shape, shapeSamples);
+            }
+
+            var points = shapeSamples.get(count);
+            if (points != null) return points;
+
+            points = shape.sample(count);
+            if (points.length % 3 != 0) {
+                throw new IllegalStateException("Particle shape produced " + points.length + " coordinates, which is not a multiple of 3");
+            }
+
+            if (shapeSamples.size() < MAX_CACHED_COUNTS && points.length / 3 <= MAX_CACHED_POINTS) {
+                shapeSamples.put(count, points);
+            }
+
+            return points;
+        }
+    }
+}
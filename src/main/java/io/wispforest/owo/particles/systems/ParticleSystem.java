@@ -37,6 +37,9 @@ public class ParticleSystem<T> {
     final PacketBufSerializer<T> adapter;
     ParticleSystemExecutor<T> handler;
 
+    double maxDistanceSquared = 0;
+    Priority priority = Priority.NORMAL;
+
     private final boolean permitsContextlessExecution;
 
     ParticleSystem(ParticleSystemController manager, Class<T> dataClass, int index, PacketBufSerializer<T> adapter, ParticleSystemExecutor<T> handler) {
@@ -64,6 +67,37 @@ public class ParticleSystem<T> {
         this.handler = handler;
     }
 
+    /**
+     * Limits the distance at which players are sent this particle system when
+     * it is spawned on the server. By default, all players tracking the chunk
+     * the system is spawned in receive it
+     *
+     * @param blocks The maximum distance between a player and the system's position,
+     *               {@code 0} or less to disable the limit
+     * @return This particle system
+     */
+    public ParticleSystem<T> maxDistance(double blocks) {
+        if (OwoFreezer.isFrozen()) throw new ServicesFrozenException("Particle systems can only be changed during mod init");
+
+        this.maxDistanceSquared = blocks > 0 ? blocks * blocks : 0;
+        return this;
+    }
+
+    /**
+     * Sets the priority with which the client executes this particle system
+     * when it is received from the server while the client's per-frame
+     * budget is exhausted, see {@link ParticleSystemController#setClientFrameBudget(long)}
+     *
+     * @param priority The priority to use, {@link Priority#NORMAL} by default
+     * @return This particle system
+     */
+    public ParticleSystem<T> priority(Priority priority) {
+        if (OwoFreezer.isFrozen()) throw new ServicesFrozenException("Particle systems can only be changed during mod init");
+
+        this.priority = priority;
+        return this;
+    }
+
     /**
      * Spawns, or displays, whichever term you prefer,
      * this particle system in the given world at the
@@ -96,4 +130,21 @@ public class ParticleSystem<T> {
     public void spawn(World world, Vec3d pos) {
         spawn(world, pos, null);
     }
+
+    public enum Priority {
+        /**
+         * Always executed in the frame it is received, regardless of the budget
+         */
+        CRITICAL,
+        /**
+         * Executed while there is budget left in the current frame,
+         * otherwise deferred for a few frames before being dropped
+         */
+        NORMAL,
+        /**
+         * Executed after {@link #NORMAL} systems if there is budget
+         * left in the current frame, otherwise dropped
+         */
+        LOW
+    }
 }
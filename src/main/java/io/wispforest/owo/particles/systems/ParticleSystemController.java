@@ -3,31 +3,38 @@ package io.wispforest.owo.particles.systems;
 import io.wispforest.owo.Owo;
 import io.wispforest.owo.network.NetworkException;
 import io.wispforest.owo.network.OwoHandshake;
+import io.wispforest.owo.network.TrackingCache;
 import io.wispforest.owo.network.serialization.PacketBufSerializer;
 import io.wispforest.owo.util.OwoFreezer;
 import io.wispforest.owo.util.ReflectionUtils;
 import io.wispforest.owo.util.VectorSerializer;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
-import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import org.jetbrains.annotations.ApiStatus;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A controller object that manages and creates {@link ParticleSystem}s.
@@ -37,6 +44,15 @@ import java.util.Map;
  * with the system's context data class and handler function. <b>It is important
  * that this is done on both client and server, otherwise joining the server
  * will fail in a handshake error</b>
+ * <p>
+ * Systems spawned on the server are collected over the course of a tick
+ * and sent to every tracking player as a single packet at its end. Inside
+ * that packet, positions are accurate to 1/4096th of a block. Players farther
+ * away than a system's {@link ParticleSystem#maxDistance(double) maximum distance}
+ * are skipped
+ * <p>
+ * The client executes received systems at the start of each frame, within a time
+ * budget configured through {@link #setClientFrameBudget(long)}
  */
 public class ParticleSystemController {
 
@@ -46,10 +62,36 @@ public class ParticleSystemController {
     @ApiStatus.Internal
     public final Int2ObjectMap<ParticleSystem<?>> systemsByIndex = new Int2ObjectOpenHashMap<>();
 
+    /**
+     * Part of every controller's handshake hash, so peers
+     * which encode spawns differently refuse to connect.
+     * Bump this whenever the packet layout changes
+     */
+    @ApiStatus.Internal
+    public static final int WIRE_FORMAT_VERSION = 1;
+
+    /**
+     * Positions inside a batch are sent as offsets from its origin
+     * in multiples of {@code 1 / POSITION_SCALE} blocks
+     */
+    private static final double POSITION_SCALE = 4096;
+
+    /**
+     * Batches which grow beyond this many bytes are sent right away,
+     * well below the size limit of vanilla's custom payload packet
+     */
+    private static final int MAX_BATCH_SIZE = 262144;
+
+    private static final Set<ParticleSystemController> PENDING_CONTROLLERS = new ReferenceOpenHashSet<>();
+
     public final Identifier channelId;
     private int maxIndex = 0;
     private final String ownerClassName;
 
+    // spawns of the current tick, sent as one packet per player at its end
+    private final Map<ServerPlayerEntity, SpawnBatch> pendingBatches = new Reference2ObjectOpenHashMap<>();
+    private final PacketByteBuf scratch = PacketByteBufs.create();
+
     /**
      * Creates a new controller with the given ID. Duplicate controller IDs
      * are not allowed - if there is a collision, the name of the
@@ -113,16 +155,87 @@ public class ParticleSystemController {
     }
 
     <T> void sendPacket(ParticleSystem<T> particleSystem, ServerWorld world, Vec3d pos, T data) {
-        PacketByteBuf buf = PacketByteBufs.create();
-        buf.writeVarInt(particleSystem.index);
-        VectorSerializer.write(buf, pos);
-        particleSystem.adapter.serializer().accept(buf, data);
+        if (!world.getServer().isOnThread()) {
+            world.getServer().execute(() -> this.sendPacket(particleSystem, world, pos, data));
+            return;
+        }
+
+        final var players = TrackingCache.tracking(world, new BlockPos(pos));
+        if (players.isEmpty()) return;
 
-        for (var player : PlayerLookup.tracking(world, new BlockPos(pos))) {
-            ServerPlayNetworking.send(player, channelId, buf);
+        // the data is serialized once, only the position is written per player
+        boolean serialized = false;
+
+        for (var player : players) {
+            if (particleSystem.maxDistanceSquared > 0 && player.squaredDistanceTo(pos) > particleSystem.maxDistanceSquared) {
+                continue;
+            }
+
+            if (!serialized) {
+                this.scratch.clear();
+                particleSystem.adapter.serializer().accept(this.scratch, data);
+                serialized = true;
+            }
+
+            var batch = this.pendingBatches.computeIfAbsent(player, key -> {
+                if (this.pendingBatches.isEmpty()) PENDING_CONTROLLERS.add(this);
+                return new SpawnBatch(pos);
+            });
+
+            batch.append(particleSystem.index, pos, this.scratch);
+
+            if (batch.size() >= MAX_BATCH_SIZE) {
+                ServerPlayNetworking.send(player, this.channelId, batch.buffer);
+                this.pendingBatches.remove(player);
+            }
         }
     }
 
+    /**
+     * Sets how much time the client may spend executing particle systems
+     * received from the server each frame. Systems which do not fit into
+     * the budget are deferred or dropped based on their {@link ParticleSystem.Priority}.
+     * The budget is shared by all controllers and defaults to 2 milliseconds
+     *
+     * @param nanos The budget in nanoseconds, {@code 0} or less to
+     *              execute all systems as soon as they are received
+     */
+    @Environment(EnvType.CLIENT)
+    public static void setClientFrameBudget(long nanos) {
+        ParticleSystemScheduler.frameBudgetNanos = nanos;
+    }
+
+    /**
+     * @return The total amount of particle systems the client has executed, deferred
+     * to a later frame and dropped since the game was started. A system which is
+     * deferred several times is counted once per frame it was deferred in
+     */
+    @Environment(EnvType.CLIENT)
+    public static ClientBudgetStats clientBudgetStats() {
+        return new ClientBudgetStats(ParticleSystemScheduler.executed, ParticleSystemScheduler.deferred, ParticleSystemScheduler.dropped);
+    }
+
+    private void flushBatches() {
+        for (var entry : this.pendingBatches.entrySet()) {
+            var player = entry.getKey();
+            var batch = entry.getValue();
+
+            if (player.isDisconnected()) {
+                batch.buffer.release();
+                continue;
+            }
+
+            ServerPlayNetworking.send(player, this.channelId, batch.buffer);
+        }
+
+        this.pendingBatches.clear();
+    }
+
+    private void discardBatches() {
+        this.pendingBatches.values().forEach(batch -> batch.buffer.release());
+        this.pendingBatches.clear();
+    }
+
     private void verify() {
         if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
             for (ParticleSystem<?> system : systemsByIndex.values()) {
@@ -142,24 +255,85 @@ public class ParticleSystemController {
                 controller.verify();
             }
         });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (PENDING_CONTROLLERS.isEmpty()) return;
+
+            for (var controller : PENDING_CONTROLLERS) controller.flushBatches();
+            PENDING_CONTROLLERS.clear();
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            for (var controller : PENDING_CONTROLLERS) controller.discardBatches();
+            PENDING_CONTROLLERS.clear();
+        });
+
+        if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
+            ParticleSystemScheduler.init();
+        }
+    }
+
+    public record ClientBudgetStats(long executed, long deferred, long dropped) {}
+
+    /**
+     * The spawns queued for a single player during the current tick. A batch
+     * consists of its origin, followed by one entry per spawn: the system
+     * index, the offset from the origin in fixed-point and the system's data
+     */
+    private static final class SpawnBatch {
+        private final PacketByteBuf buffer = PacketByteBufs.create();
+        private final Vec3d origin;
+
+        private SpawnBatch(Vec3d origin) {
+            this.origin = origin;
+            VectorSerializer.write(this.buffer, origin);
+        }
+
+        private void append(int systemIndex, Vec3d pos, PacketByteBuf data) {
+            this.buffer.writeVarInt(systemIndex);
+            writeOffset(this.buffer, pos.x - this.origin.x);
+            writeOffset(this.buffer, pos.y - this.origin.y);
+            writeOffset(this.buffer, pos.z - this.origin.z);
+            this.buffer.writeBytes(data, data.readerIndex(), data.readableBytes());
+        }
+
+        private int size() {
+            return this.buffer.readableBytes();
+        }
+
+        private static void writeOffset(PacketByteBuf buf, double offset) {
+            final long fixed = Math.round(offset * POSITION_SCALE);
+            buf.writeVarLong((fixed << 1) ^ (fixed >> 63));
+        }
+
+        private static double readOffset(PacketByteBuf buf) {
+            final long zigzag = buf.readVarLong();
+            return ((zigzag >>> 1) ^ -(zigzag & 1)) / POSITION_SCALE;
+        }
     }
 
     @Environment(EnvType.CLIENT)
     private class Client {
-        @SuppressWarnings("unchecked")
         private void handler(MinecraftClient client, ClientPlayNetworkHandler networkHandler, PacketByteBuf buf, PacketSender sender) {
-            int index = buf.readVarInt();
+            final Vec3d origin = VectorSerializer.read(buf);
+            final var spawns = new ArrayList<ParticleSystemScheduler.QueuedSpawn>();
 
-            Vec3d pos = VectorSerializer.read(buf);
+            while (buf.isReadable()) {
+                int index = buf.readVarInt();
+                Vec3d pos = origin.add(SpawnBatch.readOffset(buf), SpawnBatch.readOffset(buf), SpawnBatch.readOffset(buf));
+
+                if (maxIndex <= index || index < 0) {
+                    // the data of an unknown system cannot be skipped, so the rest of the batch is lost
+                    Owo.LOGGER.warn("Received unknown particle system index {} on channel {}", index, channelId);
+                    break;
+                }
 
-            if (maxIndex <= index || index < 0) {
-                Owo.LOGGER.warn("Received unknown particle system index {} on channel {}", index, channelId);
-                return;
+                var system = systemsByIndex.get(index);
+                spawns.add(new ParticleSystemScheduler.QueuedSpawn(system, pos, system.adapter.deserializer().apply(buf)));
             }
 
-            ParticleSystem<Object> system = (ParticleSystem<Object>) systemsByIndex.get(index);
-            var data = system.adapter.deserializer().apply(buf);
-            client.execute(() -> system.handler.executeParticleSystem(client.world, pos, data));
+            if (spawns.isEmpty()) return;
+            client.execute(() -> ParticleSystemScheduler.submit(spawns));
         }
     }
 }
@@ -0,0 +1,138 @@
+package io.wispforest.owo.particles.systems;
+
+import io.wispforest.owo.Owo;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Executes the particle systems received from the server at the start of
+ * every frame, within a time budget. Systems which don't fit into the budget
+ * are deferred or dropped, depending on their {@link ParticleSystem.Priority}
+ */
+@Environment(EnvType.CLIENT)
+final class ParticleSystemScheduler {
+
+    /**
+     * Deferred systems are dropped once they have waited this many frames
+     */
+    private static final int MAX_DEFERRED_FRAMES = 10;
+
+    /**
+     * At most this many systems wait for execution, the oldest are dropped beyond that
+     */
+    private static final int MAX_QUEUED = 8192;
+
+    private static final Deque<QueuedSpawn> CRITICAL = new ArrayDeque<>();
+    private static final Deque<QueuedSpawn> NORMAL = new ArrayDeque<>();
+    private static final Deque<QueuedSpawn> LOW = new ArrayDeque<>();
+
+    static long frameBudgetNanos = Long.getLong("owo.particleSystemFrameBudgetNanos", 2_000_000L);
+
+    private static long frame = 0;
+
+    static long executed = 0;
+    static long deferred = 0;
+    static long dropped = 0;
+
+    private ParticleSystemScheduler() {}
+
+    static void init() {
+        WorldRenderEvents.START.register(context -> runFrame());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> clear());
+    }
+
+    /**
+     * Queues the given systems for execution, must be called on the client thread
+     */
+    static void submit(List<QueuedSpawn> spawns) {
+        for (var spawn : spawns) {
+            spawn.enqueuedFrame = frame;
+
+            switch (spawn.system.priority) {
+                case CRITICAL -> CRITICAL.addLast(spawn);
+                case NORMAL -> NORMAL.addLast(spawn);
+                case LOW -> LOW.addLast(spawn);
+            }
+        }
+
+        trim(LOW);
+        trim(NORMAL);
+    }
+
+    private static void runFrame() {
+        frame++;
+
+        final var world = MinecraftClient.getInstance().world;
+        if (world == null) {
+            clear();
+            return;
+        }
+
+        final long deadline = System.nanoTime() + frameBudgetNanos;
+
+        // critical systems ignore the budget, but still count against it
+        while (!CRITICAL.isEmpty()) execute(world, CRITICAL.pollFirst());
+
+        while (!NORMAL.isEmpty() && withinBudget(deadline)) execute(world, NORMAL.pollFirst());
+        while (!LOW.isEmpty() && withinBudget(deadline)) execute(world, LOW.pollFirst());
+
+        // low priority systems are not worth showing late
+        dropped += LOW.size();
+        LOW.clear();
+
+        deferred += NORMAL.size();
+        while (!NORMAL.isEmpty() && frame - NORMAL.peekFirst().enqueuedFrame >= MAX_DEFERRED_FRAMES) {
+            NORMAL.pollFirst();
+            dropped++;
+        }
+    }
+
+    private static boolean withinBudget(long deadline) {
+        return frameBudgetNanos <= 0 || System.nanoTime() < deadline;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void execute(World world, QueuedSpawn spawn) {
+        try {
+            ((ParticleSystem<Object>) spawn.system).handler.executeParticleSystem(world, spawn.pos, spawn.data);
+            executed++;
+        } catch (Throwable e) {
+            Owo.LOGGER.error("Particle system executor threw an exception", e);
+        }
+    }
+
+    private static void trim(Deque<QueuedSpawn> queue) {
+        while (queue.size() > MAX_QUEUED) {
+            queue.pollFirst();
+            dropped++;
+        }
+    }
+
+    private static void clear() {
+        CRITICAL.clear();
+        NORMAL.clear();
+        LOW.clear();
+    }
+
+    static final class QueuedSpawn {
+        private final ParticleSystem<?> system;
+        private final Vec3d pos;
+        private final Object data;
+        private long enqueuedFrame;
+
+        QueuedSpawn(ParticleSystem<?> system, Vec3d pos, Object data) {
+            this.system = system;
+            this.pos = pos;
+            this.data = data;
+        }
+    }
+}
@@ -45,7 +45,7 @@ public abstract class BaseComponent implements Component {
     protected final EventStream<MouseLeave> mouseLeaveEvents = MouseLeave.newStream();
 
     protected boolean hovered = false;
-    protected boolean dirty = false;
+    protected boolean dirty = true;
 
     protected CursorStyle cursorStyle = CursorStyle.NONE;
     protected List<TooltipComponent> tooltip = List.of();
@@ -75,9 +75,22 @@ public abstract class BaseComponent implements Component {
 
     @Override
     public void inflate(Size space) {
+        if (!this.needsInflation(space)) return;
+
         this.space = space;
         this.applySizing();
         this.dirty = false;
+
+        OwoUIAdapter.countMeasurement();
+    }
+
+    /**
+     * Whether this component must be measured again when inflated into
+     * the given space - if neither the space nor the component itself
+     * changed since the last inflation, the previous measurement is kept
+     */
+    protected boolean needsInflation(Size space) {
+        return this.dirty || !this.space.equals(space);
     }
 
     /**
@@ -95,6 +108,8 @@ public abstract class BaseComponent implements Component {
     }
 
     protected void notifyParentIfMounted() {
+        // marked even while unmounted, so that the next inflation does not reuse a stale measurement
+        this.dirty = true;
         if (!this.hasParent()) return;
 
         if (this.batchedEvents > 0) {
@@ -102,7 +117,6 @@ public abstract class BaseComponent implements Component {
             return;
         }
 
-        this.dirty = true;
         this.parent.onChildMutated(this);
     }
 
@@ -2,6 +2,7 @@ package io.wispforest.owo.ui.base;
 
 import io.wispforest.owo.ui.core.*;
 import io.wispforest.owo.ui.util.FocusHandler;
+import io.wispforest.owo.ui.util.RenderCache;
 import io.wispforest.owo.ui.util.ScissorStack;
 import io.wispforest.owo.util.Observable;
 import net.minecraft.client.util.math.MatrixStack;
@@ -31,6 +32,8 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
     protected Surface surface = Surface.BLANK;
     protected boolean allowOverflow = false;
 
+    protected @Nullable RenderCache renderCache = null;
+
     protected BaseParentComponent(Sizing horizontalSizing, Sizing verticalSizing) {
         this.horizontalSizing.set(horizontalSizing);
         this.verticalSizing.set(verticalSizing);
@@ -40,10 +43,16 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
 
     @Override
     public final void update(float delta, int mouseX, int mouseY) {
+        final long animationSteps = Animation.stepCount();
+
         ParentComponent.super.update(delta, mouseX, mouseY);
         super.update(delta, mouseX, mouseY);
         this.parentUpdate(delta, mouseX, mouseY);
 
+        if (this.renderCache != null) {
+            this.renderCache.update(animationSteps, mouseX, mouseY);
+        }
+
         if (this.taskQueue != null) {
             this.taskQueue.forEach(Runnable::run);
             this.taskQueue.clear();
@@ -141,6 +150,25 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
         return this.surface;
     }
 
+    @Override
+    public ParentComponent cacheRendering(boolean cacheRendering) {
+        if (cacheRendering == (this.renderCache != null)) return this;
+
+        if (cacheRendering) {
+            this.renderCache = new RenderCache(this);
+        } else {
+            this.renderCache.dispose();
+            this.renderCache = null;
+        }
+
+        return this;
+    }
+
+    @Override
+    public @Nullable RenderCache renderCache() {
+        return this.renderCache;
+    }
+
     @Override
     public void mount(ParentComponent parent, int x, int y) {
         super.mount(parent, x, y);
@@ -152,20 +180,27 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
 
     @Override
     public void inflate(Size space) {
-        if (this.space.equals(space) && !this.dirty) return;
+        if (!this.needsInflation(space)) return;
         this.space = space;
 
         for (var child : this.children()) {
             child.dismount(DismountReason.LAYOUT_INFLATION);
         }
 
-        super.inflate(space);
+        // children whose space did not change and which are not
+        // dirty keep their previous measurement when inflated again
+        this.applySizing();
         this.layout(space);
-        super.inflate(space);
+        this.applySizing();
+        this.dirty = false;
+
+        OwoUIAdapter.countMeasurement();
+        if (this.renderCache != null) this.renderCache.invalidate();
     }
 
     protected void updateLayout() {
         if (!this.mounted) return;
+        RenderCache.invalidateAncestors(this);
 
         if (this.batchedEvents > 0) {
             this.batchedEvents++;
@@ -177,11 +212,20 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
         this.dirty = true;
         this.inflate(this.space);
 
-        if (!previousSize.equals(this.fullSize()) && this.parent != null) {
+        if (this.parent == null || !this.sizeDependsOnContent()) return;
+        if (!previousSize.equals(this.fullSize())) {
             this.parent.onChildMutated(this);
         }
     }
 
+    /**
+     * Whether the size of this component can change when its children do - if
+     * not, layout changes inside it never need to propagate further up the tree
+     */
+    protected boolean sizeDependsOnContent() {
+        return this.horizontalSizing.get().isContent() || this.verticalSizing.get().isContent();
+    }
+
     @Override
     protected void runAndDeferEvents(Runnable action) {
         try {
@@ -199,11 +243,14 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
 
     @Override
     public void onChildMutated(Component child) {
+        RenderCache.invalidateAncestors(this);
         this.updateLayout();
     }
 
     @Override
     public boolean onMouseDown(double mouseX, double mouseY, int button) {
+        if (this.renderCache != null) this.renderCache.invalidate();
+
         if (this.focusHandler != null) {
             this.focusHandler.updateClickFocus(this.x + mouseX, this.y + mouseY);
         }
@@ -214,6 +261,8 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
 
     @Override
     public boolean onMouseUp(double mouseX, double mouseY, int button) {
+        if (this.renderCache != null) this.renderCache.invalidate();
+
         if (this.focusHandler != null && this.focusHandler.focused() != null) {
             final var focused = this.focusHandler.focused();
             return focused.onMouseUp(this.x + mouseX - focused.x(), this.y + mouseY - focused.y(), button);
@@ -224,11 +273,14 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
 
     @Override
     public boolean onMouseScroll(double mouseX, double mouseY, double amount) {
+        if (this.renderCache != null) this.renderCache.invalidate();
         return ParentComponent.super.onMouseScroll(mouseX, mouseY, amount) || super.onMouseScroll(mouseX, mouseY, amount);
     }
 
     @Override
     public boolean onMouseDrag(double mouseX, double mouseY, double deltaX, double deltaY, int button) {
+        if (this.renderCache != null) this.renderCache.invalidate();
+
         if (this.focusHandler != null && this.focusHandler.focused() != null) {
             final var focused = this.focusHandler.focused();
             return focused.onMouseDrag(this.x + mouseX - focused.x(), this.y + mouseY - focused.y(), deltaX, deltaY, button);
@@ -269,6 +321,9 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
         int offset = x - this.x;
         super.updateX(x);
 
+        if (offset == 0) return;
+        if (this.renderCache != null) this.renderCache.invalidate();
+
         for (var child : this.children()) {
             child.updateX(child.x() + offset);
         }
@@ -279,6 +334,9 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
         int offset = y - this.y;
         super.updateY(y);
 
+        if (offset == 0) return;
+        if (this.renderCache != null) this.renderCache.invalidate();
+
         for (var child : this.children()) {
             child.updateY(child.y() + offset);
         }
@@ -352,7 +410,7 @@ public abstract class BaseParentComponent extends BaseComponent implements Paren
             if (!ScissorStack.isVisible(child, matrices)) continue;
             matrices.translate(0, 0, child.zIndex());
 
-            child.draw(matrices, mouseX, mouseY, partialTicks, delta);
+            RenderCache.drawComponent(child, matrices, mouseX, mouseY, partialTicks, delta);
             if (focusHandler.lastFocusSource() == FocusSource.KEYBOARD_CYCLE && focusHandler.focused() == child) {
                 child.drawFocusHighlight(matrices, mouseX, mouseY, partialTicks, delta);
             }
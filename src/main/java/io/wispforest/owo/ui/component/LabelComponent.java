@@ -118,6 +118,8 @@ public class LabelComponent extends BaseComponent {
 
     @Override
     public void inflate(Size space) {
+        if (!this.needsInflation(space)) return;
+
         this.wrapLines();
         super.inflate(space);
     }
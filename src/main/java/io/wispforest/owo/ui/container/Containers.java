@@ -34,6 +34,10 @@ public class Containers {
         return new ScrollContainer<>(ScrollContainer.ScrollDirection.HORIZONTAL, horizontalSizing, verticalSizing, child);
     }
 
+    public static <C extends Component> VirtualListContainer<C> virtualList(Sizing horizontalSizing, Sizing verticalSizing, VirtualListContainer.Adapter<C> adapter) {
+        return new VirtualListContainer<>(horizontalSizing, verticalSizing, adapter);
+    }
+
     // ----------------
     // Utility wrappers
     // ----------------
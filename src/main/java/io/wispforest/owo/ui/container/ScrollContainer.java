@@ -6,6 +6,7 @@ import io.wispforest.owo.ui.parsing.UIModelParsingException;
 import io.wispforest.owo.ui.parsing.UIParsing;
 import io.wispforest.owo.ui.util.Drawer;
 import io.wispforest.owo.ui.util.OwoNinePatchRenderers;
+import io.wispforest.owo.ui.util.RenderCache;
 import net.minecraft.client.gui.DrawableHelper;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.MathHelper;
@@ -165,6 +166,11 @@ public class ScrollContainer<C extends Component> extends WrappingParentComponen
                     this.maxScroll > 0
             );
         }
+
+        // Keep cached ancestors redrawing while scrolling or fading the scrollbar
+        if (Math.abs(this.scrollOffset - this.currentScrollPosition) > .01 || this.lastScrollbarInteractTime > System.currentTimeMillis()) {
+            RenderCache.invalidateAncestors(this);
+        }
     }
 
     @Override
@@ -245,6 +251,8 @@ public class ScrollContainer<C extends Component> extends WrappingParentComponen
         this.scrollOffset = MathHelper.clamp(this.scrollOffset + offset, 0, this.maxScroll + .5);
         if (instant) this.currentScrollPosition = this.scrollOffset;
         if (showScrollbar) this.lastScrollbarInteractTime = System.currentTimeMillis() + 1250;
+
+        RenderCache.invalidateAncestors(this);
     }
 
     protected boolean isInScrollbar(double mouseX, double mouseY) {
@@ -257,6 +265,7 @@ public class ScrollContainer<C extends Component> extends WrappingParentComponen
      */
     public ScrollContainer<C> scrollTo(Component component) {
         this.scrollOffset = MathHelper.clamp(this.scrollOffset - (this.y - component.y() + component.margins().get().top()), 0, this.maxScroll);
+        RenderCache.invalidateAncestors(this);
         return this;
     }
 
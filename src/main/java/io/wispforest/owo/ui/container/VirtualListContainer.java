@@ -0,0 +1,442 @@
+package io.wispforest.owo.ui.container;
+
+import io.wispforest.owo.ui.base.BaseParentComponent;
+import io.wispforest.owo.ui.core.Component;
+import io.wispforest.owo.ui.core.ParentComponent;
+import io.wispforest.owo.ui.core.Size;
+import io.wispforest.owo.ui.core.Sizing;
+import io.wispforest.owo.ui.util.RenderCache;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.*;
+
+/**
+ * A vertical scroll container which displays a list of items provided
+ * by an {@link Adapter}. Only the items that intersect the viewport, plus
+ * a few above and below it, are bound, inflated and mounted - items which
+ * scroll out of view are recycled and rebound to the items scrolling into view
+ * <p>
+ * The heights of items which have not been displayed yet are estimated, either from
+ * {@link #estimatedItemHeight(int)} or from the average height of the items measured
+ * so far. The total height of the list is corrected once the real heights are known
+ * <p>
+ * Whenever the data displayed by the adapter changes, call {@link #notifyDataChanged()}
+ * or {@link #notifyItemChanged(int)}, otherwise the list will keep displaying stale items
+ *
+ * @param <C> The type of component the adapter creates for each item
+ */
+public class VirtualListContainer<C extends Component> extends ScrollContainer<VirtualListContainer.ItemList<C>> {
+
+    protected VirtualListContainer(Sizing horizontalSizing, Sizing verticalSizing, Adapter<C> adapter) {
+        super(ScrollDirection.VERTICAL, horizontalSizing, verticalSizing, new ItemList<>(adapter));
+    }
+
+    /**
+     * Discard all bound items and measurements and rebind the
+     * visible items, to be called after the adapter's data has changed
+     */
+    public VirtualListContainer<C> notifyDataChanged() {
+        this.child.dataChanged();
+        return this;
+    }
+
+    /**
+     * Rebind and re-measure the item at the given index,
+     * if it is currently displayed
+     *
+     * @param index The index of the changed item
+     */
+    public VirtualListContainer<C> notifyItemChanged(int index) {
+        this.child.itemChanged(index);
+        return this;
+    }
+
+    /**
+     * Scroll to the item at the given index, trying
+     * to align it to the top of this container
+     *
+     * @param index The index of the item to scroll to
+     */
+    public VirtualListContainer<C> scrollToItem(int index) {
+        this.scrollOffset = MathHelper.clamp(this.child.offsetOf(index), 0, this.maxScroll);
+        RenderCache.invalidateAncestors(this);
+        return this;
+    }
+
+    /**
+     * Set how many items above and below the viewport
+     * should be mounted in addition to the visible ones
+     */
+    public VirtualListContainer<C> overscan(int overscan) {
+        this.child.overscan = Math.max(0, overscan);
+        this.child.refreshVisible(true);
+        return this;
+    }
+
+    /**
+     * @return How many items above and below the viewport
+     * are mounted in addition to the visible ones
+     */
+    public int overscan() {
+        return this.child.overscan;
+    }
+
+    /**
+     * Set the height, including margins, to assume for items
+     * which have not been measured yet. If this is {@code 0}, the
+     * average height of the items measured so far is used
+     */
+    public VirtualListContainer<C> estimatedItemHeight(int estimatedItemHeight) {
+        this.child.estimatedItemHeight = Math.max(0, estimatedItemHeight);
+        this.child.offsetsDirty = true;
+        this.child.queueRelayout();
+        return this;
+    }
+
+    /**
+     * @return The height assumed for items which have not been measured
+     * yet, or {@code 0} if the average measured height is used
+     */
+    public int estimatedItemHeight() {
+        return this.child.estimatedItemHeight;
+    }
+
+    /**
+     * @return The adapter providing the items of this list
+     */
+    public Adapter<C> adapter() {
+        return this.child.adapter;
+    }
+
+    /**
+     * Provides the items displayed by a {@link VirtualListContainer}
+     *
+     * @param <C> The type of component used to display an item
+     */
+    public interface Adapter<C extends Component> {
+
+        /**
+         * @return How many items the list contains
+         */
+        int itemCount();
+
+        /**
+         * Create a new component which can display any item, it is
+         * always bound through {@link #bindComponent(Component, int)} before
+         * being displayed. Components are reused for different items
+         */
+        C createComponent();
+
+        /**
+         * Make the given component display the item at the given index. The component
+         * must be changed through its regular setters, as components only measure
+         * themselves again when they have been notified of a change
+         *
+         * @param component A component previously created by {@link #createComponent()},
+         *                  which may have displayed a different item before
+         * @param index     The index of the item to display
+         */
+        void bindComponent(C component, int index);
+
+        /**
+         * Called when a component has scrolled out of view and will
+         * be kept around to be bound to a different item later
+         *
+         * @param component The component which is no longer displayed
+         */
+        default void recycleComponent(C component) {}
+    }
+
+    /**
+     * The child of a {@link VirtualListContainer}, which stands in for the entire
+     * list but only ever contains the components of the items around the viewport
+     */
+    public static class ItemList<C extends Component> extends BaseParentComponent {
+
+        /**
+         * The height of unmeasured items if there neither
+         * is an estimate nor any item has been measured yet
+         */
+        protected static final int DEFAULT_ITEM_HEIGHT = 16;
+
+        protected final Adapter<C> adapter;
+
+        protected final Int2ObjectMap<C> itemsByIndex = new Int2ObjectOpenHashMap<>();
+        protected final Deque<C> recycledItems = new ArrayDeque<>();
+
+        protected final List<Component> children = new ArrayList<>();
+        protected final List<Component> childrenView = Collections.unmodifiableList(this.children);
+
+        // the full height of every item, -1 if it has not been measured yet
+        protected int[] heights = new int[0];
+        // the offset of every item from the top of the list, followed by the total height
+        protected int[] offsets = new int[1];
+        protected boolean offsetsDirty = true;
+
+        protected int measuredItems = 0;
+        protected long measuredHeight = 0;
+        protected int measuredWidth = -1;
+
+        protected int estimatedItemHeight = 0;
+        protected int overscan = 3;
+
+        protected int firstVisible = 0;
+        protected int lastVisible = -1;
+
+        protected boolean relayoutQueued = false;
+
+        protected ItemList(Adapter<C> adapter) {
+            super(Sizing.fill(100), Sizing.content());
+            this.adapter = adapter;
+            this.resetMeasurements();
+        }
+
+        @Override
+        protected int determineVerticalContentSize(Sizing sizing) {
+            return this.offsetOf(this.heights.length) + this.padding.get().vertical();
+        }
+
+        @Override
+        public void layout(Size space) {
+            final int innerWidth = this.width - this.padding.get().horizontal();
+
+            // items have to be re-inflated if the width changes, as their height may depend on it
+            if (innerWidth != this.measuredWidth) {
+                this.recycleAll();
+                this.resetMeasurements();
+                this.measuredWidth = innerWidth;
+            }
+
+            // the items have been dismounted by inflation, so they need to be mounted again
+            this.refreshVisible(true);
+        }
+
+        @Override
+        public void draw(MatrixStack matrices, int mouseX, int mouseY, float partialTicks, float delta) {
+            super.draw(matrices, mouseX, mouseY, partialTicks, delta);
+            this.drawChildren(matrices, mouseX, mouseY, partialTicks, delta, this.children);
+        }
+
+        @Override
+        public void updateX(int x) {
+            super.updateX(x);
+            this.refreshVisible(false);
+        }
+
+        @Override
+        public void updateY(int y) {
+            super.updateY(y);
+            this.refreshVisible(false);
+        }
+
+        @Override
+        public List<Component> children() {
+            return this.childrenView;
+        }
+
+        @Override
+        public ParentComponent removeChild(Component child) {
+            throw new UnsupportedOperationException("The items of a virtual list are managed by its adapter");
+        }
+
+        protected void dataChanged() {
+            this.recycleAll();
+            this.resetMeasurements();
+
+            if (this.mounted) {
+                this.notifyParentIfMounted();
+            }
+        }
+
+        protected void itemChanged(int index) {
+            if (index < 0 || index >= this.heights.length) return;
+
+            final var item = this.itemsByIndex.get(index);
+            if (item == null) {
+                // not displayed, so it is re-measured once it scrolls into view
+                if (this.measure(index, -1)) this.queueRelayout();
+                return;
+            }
+
+            this.adapter.bindComponent(item, index);
+            item.inflate(this.itemSpace());
+
+            if (this.measure(index, item.fullSize().height())) {
+                this.refreshVisible(true);
+                this.queueRelayout();
+            }
+        }
+
+        /**
+         * Bind, inflate and mount the items intersecting the viewport plus overscan and
+         * recycle all others. Unless {@code force} is set, nothing happens if the
+         * range of visible items has not changed since the last call
+         */
+        protected void refreshVisible(boolean force) {
+            if (!this.mounted || !(this.parent instanceof ScrollContainer<?> container)) return;
+
+            final var containerPadding = container.padding().get();
+            final int viewportTop = container.y() + containerPadding.top() - (this.y + this.padding.get().top());
+            final int viewportBottom = viewportTop + container.height() - containerPadding.vertical();
+
+            final int first = Math.max(0, this.indexAt(viewportTop) - this.overscan);
+            final int last = Math.min(this.heights.length - 1, this.indexAt(viewportBottom) + this.overscan);
+
+            if (!force && first == this.firstVisible && last == this.lastVisible) return;
+
+            for (int i = this.firstVisible; i <= this.lastVisible; i++) {
+                if (i >= first && i <= last) continue;
+                this.recycle(this.itemsByIndex.remove(i));
+            }
+
+            final int previousHeight = this.offsetOf(this.heights.length);
+            boolean measurementsChanged = false;
+
+            for (int i = first; i <= last; i++) {
+                if (this.itemsByIndex.containsKey(i)) continue;
+
+                final var item = this.recycledItems.isEmpty() ? this.adapter.createComponent() : this.recycledItems.poll();
+                this.adapter.bindComponent(item, i);
+                item.inflate(this.itemSpace());
+
+                measurementsChanged |= this.measure(i, item.fullSize().height());
+                this.itemsByIndex.put(i, item);
+            }
+
+            this.firstVisible = first;
+            this.lastVisible = last;
+
+            final var padding = this.padding.get();
+
+            this.children.clear();
+            for (int i = first; i <= last; i++) {
+                final var item = this.itemsByIndex.get(i);
+                final var margins = item.margins().get();
+
+                this.children.add(item);
+                item.mount(this, this.x + padding.left() + margins.left(), this.y + padding.top() + this.offsetOf(i) + margins.top());
+            }
+
+            if (measurementsChanged && this.offsetOf(this.heights.length) != previousHeight) {
+                this.queueRelayout();
+            }
+        }
+
+        /**
+         * Have the parent container re-layout this list after the current
+         * frame has been updated, so that it picks up the new total height
+         */
+        protected void queueRelayout() {
+            if (this.relayoutQueued || !this.mounted) return;
+            this.relayoutQueued = true;
+
+            this.queue(() -> {
+                this.relayoutQueued = false;
+                this.notifyParentIfMounted();
+            });
+        }
+
+        /**
+         * @return The offset of the item at the given index from the top of this list,
+         * or the total height of all items if {@code index} is the item count
+         */
+        protected int offsetOf(int index) {
+            if (this.offsetsDirty) {
+                final int estimate = this.estimatedItemHeight > 0
+                        ? this.estimatedItemHeight
+                        : this.measuredItems > 0 ? (int) (this.measuredHeight / this.measuredItems) : DEFAULT_ITEM_HEIGHT;
+
+                for (int i = 0; i < this.heights.length; i++) {
+                    this.offsets[i + 1] = this.offsets[i] + (this.heights[i] == -1 ? estimate : this.heights[i]);
+                }
+
+                this.offsetsDirty = false;
+            }
+
+            return this.offsets[MathHelper.clamp(index, 0, this.heights.length)];
+        }
+
+        /**
+         * @return The index of the item which covers the given offset from the top of this list
+         */
+        protected int indexAt(int offset) {
+            this.offsetOf(0);
+
+            int low = 0, high = this.heights.length - 1;
+            while (low < high) {
+                final int middle = (low + high + 1) >>> 1;
+
+                if (this.offsets[middle] <= offset) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * Record the height of the given item
+         *
+         * @param height The new full height of the item, or {@code -1} to forget it
+         * @return {@code true} if the height of the item changed
+         */
+        protected boolean measure(int index, int height) {
+            final int previous = this.heights[index];
+            if (previous == height) return false;
+
+            if (previous != -1) {
+                this.measuredItems--;
+                this.measuredHeight -= previous;
+            }
+
+            if (height != -1) {
+                this.measuredItems++;
+                this.measuredHeight += height;
+            }
+
+            this.heights[index] = height;
+            this.offsetsDirty = true;
+            return true;
+        }
+
+        protected Size itemSpace() {
+            final var container = this.parent;
+            return Size.of(this.measuredWidth, container != null ? container.height() : 0);
+        }
+
+        protected void recycle(C item) {
+            item.dismount(DismountReason.REMOVED);
+            this.adapter.recycleComponent(item);
+            this.recycledItems.add(item);
+        }
+
+        protected void recycleAll() {
+            for (var item : this.itemsByIndex.values()) {
+                this.recycle(item);
+            }
+
+            this.itemsByIndex.clear();
+            this.children.clear();
+
+            this.firstVisible = 0;
+            this.lastVisible = -1;
+        }
+
+        protected void resetMeasurements() {
+            final int itemCount = Math.max(0, this.adapter.itemCount());
+
+            this.heights = new int[itemCount];
+            Arrays.fill(this.heights, -1);
+            this.offsets = new int[itemCount + 1];
+            this.offsetsDirty = true;
+
+            this.measuredItems = 0;
+            this.measuredHeight = 0;
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.util.function.Consumer;
 
 public class Animation<A extends Animatable<A>> {
 
+    private static long stepCount = 0;
+
     private final int duration;
 
     private float delta = 0;
@@ -41,6 +43,16 @@ public class Animation<A extends Animatable<A>> {
         this.delta = MathHelper.clamp(this.delta + (delta * 50 / duration) * this.direction.multiplier, 0, 1);
 
         this.setter.accept(this.from.interpolate(this.to, this.easing.apply(this.delta)));
+        stepCount++;
+    }
+
+    /**
+     * @return How many times any animation has advanced so far, this
+     * can be compared before and after updating a part of the UI tree
+     * to find out whether it contains running animations
+     */
+    public static long stepCount() {
+        return stepCount;
     }
 
     public Animation<A> forwards() {
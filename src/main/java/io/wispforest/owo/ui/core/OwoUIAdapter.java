@@ -6,6 +6,7 @@ import io.wispforest.owo.Owo;
 import io.wispforest.owo.renderdoc.RenderDoc;
 import io.wispforest.owo.ui.util.CursorAdapter;
 import io.wispforest.owo.ui.util.Drawer;
+import io.wispforest.owo.ui.util.RenderCache;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.Drawable;
 import net.minecraft.client.gui.Element;
@@ -13,8 +14,11 @@ import net.minecraft.client.gui.Selectable;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.screen.narration.NarrationMessageBuilder;
 import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.ApiStatus;
 import org.lwjgl.glfw.GLFW;
 
+import java.util.ArrayList;
 import java.util.function.BiFunction;
 
 /**
@@ -34,6 +38,9 @@ public class OwoUIAdapter<R extends ParentComponent> implements Element, Drawabl
 
     private static boolean isRendering = false;
 
+    private static int measurementsSinceLastFrame = 0;
+    private static int measurementsLastFrame = 0;
+
     public final R rootComponent;
     public final CursorAdapter cursorAdapter;
 
@@ -122,6 +129,15 @@ public class OwoUIAdapter<R extends ParentComponent> implements Element, Drawabl
      */
     public void dispose() {
         this.cursorAdapter.dispose();
+
+        var components = new ArrayList<Component>();
+        this.rootComponent.collectChildren(components);
+
+        for (var component : components) {
+            if (component instanceof ParentComponent parent && parent.renderCache() != null) {
+                parent.renderCache().dispose();
+            }
+        }
     }
 
     /**
@@ -139,6 +155,23 @@ public class OwoUIAdapter<R extends ParentComponent> implements Element, Drawabl
         return this.globalInspector = !this.globalInspector;
     }
 
+    /**
+     * Record that a component has been measured during inflation,
+     * instead of keeping its previous measurement
+     */
+    @ApiStatus.Internal
+    public static void countMeasurement() {
+        measurementsSinceLastFrame++;
+    }
+
+    /**
+     * @return How many components had to be measured again between
+     * the previous and the most recent frame rendered by any UI adapter
+     */
+    public static int remeasuredComponents() {
+        return measurementsLastFrame;
+    }
+
     public int x() {
         return this.x;
     }
@@ -171,7 +204,7 @@ public class OwoUIAdapter<R extends ParentComponent> implements Element, Drawabl
             GlStateManager._enableScissorTest();
 
             GlStateManager._scissorBox(0, 0, window.getFramebufferWidth(), window.getFramebufferHeight());
-            this.rootComponent.draw(matrices, mouseX, mouseY, partialTicks, delta);
+            RenderCache.drawComponent(this.rootComponent, matrices, mouseX, mouseY, partialTicks, delta);
 
             GlStateManager._disableScissorTest();
             RenderSystem.disableDepthTest();
@@ -186,6 +219,7 @@ public class OwoUIAdapter<R extends ParentComponent> implements Element, Drawabl
             if (this.enableInspector) {
                 matrices.translate(0, 0, this.inspectorZOffset);
                 Drawer.debug().drawInspector(matrices, this.rootComponent, mouseX, mouseY, !this.globalInspector);
+                MinecraftClient.getInstance().textRenderer.draw(matrices, Text.of(measurementsLastFrame + " re-measured"), 2, 2, 0xFFFFFF);
                 matrices.translate(0, 0, -this.inspectorZOffset);
             }
 
@@ -193,6 +227,9 @@ public class OwoUIAdapter<R extends ParentComponent> implements Element, Drawabl
         } finally {
             isRendering = false;
             this.captureFrame = false;
+
+            measurementsLastFrame = measurementsSinceLastFrame;
+            measurementsSinceLastFrame = 0;
         }
     }
 
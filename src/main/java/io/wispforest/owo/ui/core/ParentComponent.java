@@ -3,6 +3,7 @@ package io.wispforest.owo.ui.core;
 import io.wispforest.owo.ui.parsing.IncompatibleUIModelException;
 import io.wispforest.owo.ui.parsing.UIModel;
 import io.wispforest.owo.ui.parsing.UIParsing;
+import io.wispforest.owo.ui.util.RenderCache;
 import io.wispforest.owo.ui.util.ScissorStack;
 import net.minecraft.client.util.math.MatrixStack;
 import org.jetbrains.annotations.NotNull;
@@ -112,6 +113,29 @@ public interface ParentComponent extends Component {
      */
     Surface surface();
 
+    /**
+     * Set whether this component should retain the rendered output of itself
+     * and its children in an offscreen framebuffer, only redrawing it when
+     * something in the subtree changes. See {@link RenderCache} for the
+     * changes which are detected automatically
+     * <p>
+     * Caching only ever saves work, so components which do not
+     * support it simply ignore this and keep rendering every frame
+     *
+     * @param cacheRendering {@code true} if the subtree should be cached
+     */
+    default ParentComponent cacheRendering(boolean cacheRendering) {
+        return this;
+    }
+
+    /**
+     * @return The render cache of this component, or {@code null}
+     * if it does not cache its rendered output
+     */
+    default @Nullable RenderCache renderCache() {
+        return null;
+    }
+
     /**
      * @return The children of this component
      */
@@ -195,6 +219,7 @@ public interface ParentComponent extends Component {
         UIParsing.apply(children, "vertical-alignment", VerticalAlignment::parse, this::verticalAlignment);
         UIParsing.apply(children, "horizontal-alignment", HorizontalAlignment::parse, this::horizontalAlignment);
         UIParsing.apply(children, "allow-overflow", UIParsing::parseBool, this::allowOverflow);
+        UIParsing.apply(children, "cache-rendering", UIParsing::parseBool, this::cacheRendering);
     }
 
     /**
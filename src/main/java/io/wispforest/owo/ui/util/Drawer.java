@@ -235,6 +235,11 @@ public class Drawer extends DrawableHelper {
                     if (child instanceof ParentComponent parentComponent) {
                         var padding = parentComponent.padding().get();
                         descriptor.append(" >" + padding.top() + "," + padding.bottom() + "," + padding.left() + "," + padding.right() + "<");
+
+                        var renderCache = parentComponent.renderCache();
+                        if (renderCache != null) {
+                            descriptor.append(" [cache " + renderCache.hits() + "/" + renderCache.misses() + "]");
+                        }
                     }
 
                     int width = Math.max(textRenderer.getWidth(nameText), textRenderer.getWidth(descriptor));
@@ -0,0 +1,231 @@
+package io.wispforest.owo.ui.util;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import io.wispforest.owo.ui.core.Animation;
+import io.wispforest.owo.ui.core.Component;
+import io.wispforest.owo.ui.core.ParentComponent;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Matrix4f;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+/**
+ * Retains the rendered output of a parent component and its entire subtree
+ * in an offscreen framebuffer, which is then drawn as a single textured quad
+ * every frame until the cache is invalidated. This is intended for large, mostly
+ * static panels - subtrees which change every frame gain nothing from caching
+ * <p>
+ * The cache is invalidated automatically when
+ * <ul>
+ *     <li>a component in the subtree changes its layout or is moved</li>
+ *     <li>the component hovered by the mouse changes</li>
+ *     <li>an {@link Animation} advances while the subtree is updated</li>
+ *     <li>the subtree receives mouse input</li>
+ *     <li>the transformation the subtree is drawn with changes</li>
+ * </ul>
+ * While a component in the subtree has focus, the subtree is drawn directly.
+ * Components whose appearance changes in other ways, like a label whose text is
+ * swapped for one of the same size, must call {@link #invalidateAncestors(Component)}
+ * <p>
+ * The subtree is composited with premultiplied alpha, which is exact for opaque
+ * content and single layers of translucent content
+ */
+public final class RenderCache {
+
+    private final ParentComponent owner;
+
+    private @Nullable Framebuffer framebuffer = null;
+    private boolean dirty = true;
+
+    private @Nullable Matrix4f lastTransform = null;
+    private @Nullable Component lastHovered = null;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public RenderCache(ParentComponent owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Draw the given component, through its render cache if it has one
+     */
+    public static void drawComponent(Component component, MatrixStack matrices, int mouseX, int mouseY, float partialTicks, float delta) {
+        final var cache = component instanceof ParentComponent parent ? parent.renderCache() : null;
+
+        if (cache == null) {
+            component.draw(matrices, mouseX, mouseY, partialTicks, delta);
+        } else {
+            cache.draw(matrices, mouseX, mouseY, partialTicks, delta);
+        }
+    }
+
+    /**
+     * Invalidate the render caches of the given component and all its ancestors
+     *
+     * @param component The component whose appearance has changed
+     */
+    public static void invalidateAncestors(Component component) {
+        Component current = component;
+
+        while (current != null) {
+            if (current instanceof ParentComponent parent && parent.renderCache() != null) {
+                parent.renderCache().invalidate();
+            }
+
+            current = current.parent();
+        }
+    }
+
+    /**
+     * Force the subtree to be redrawn the next time it is drawn
+     */
+    public void invalidate() {
+        this.dirty = true;
+    }
+
+    /**
+     * Check the mouse and animation state of the subtree, called
+     * by the owner after it and its children have been updated
+     *
+     * @param animationSteps The value of {@link Animation#stepCount()}
+     *                       before the subtree was updated
+     */
+    public void update(long animationSteps, int mouseX, int mouseY) {
+        if (Animation.stepCount() != animationSteps) this.dirty = true;
+
+        final var hovered = this.owner.childAt(mouseX, mouseY);
+        if (hovered != this.lastHovered) {
+            this.lastHovered = hovered;
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Draw the owner of this cache, re-rendering it
+     * into the cache first if it has been invalidated
+     */
+    public void draw(MatrixStack matrices, int mouseX, int mouseY, float partialTicks, float delta) {
+        if (this.hasFocusedDescendant()) {
+            this.misses++;
+            this.dirty = true;
+            this.owner.draw(matrices, mouseX, mouseY, partialTicks, delta);
+            return;
+        }
+
+        final var client = MinecraftClient.getInstance();
+        final var window = client.getWindow();
+
+        if (this.framebuffer == null || this.framebuffer.textureWidth != window.getFramebufferWidth() || this.framebuffer.textureHeight != window.getFramebufferHeight()) {
+            if (this.framebuffer != null) this.framebuffer.delete();
+
+            this.framebuffer = new SimpleFramebuffer(window.getFramebufferWidth(), window.getFramebufferHeight(), true, MinecraftClient.IS_SYSTEM_MAC);
+            this.framebuffer.setClearColor(0, 0, 0, 0);
+            this.dirty = true;
+        }
+
+        final var transform = RenderSystem.getModelViewMatrix().copy();
+        transform.multiply(matrices.peek().getPositionMatrix());
+        if (!transform.equals(this.lastTransform)) {
+            this.lastTransform = transform;
+            this.dirty = true;
+        }
+
+        if (this.dirty) {
+            // cleared before drawing, so that components can invalidate the cache while being drawn
+            this.dirty = false;
+            this.misses++;
+
+            // the output may not be the main framebuffer, for example
+            // while an enclosing cache is being rendered - so restore it afterwards
+            final int previousFramebuffer = GlStateManager._getInteger(GL30.GL_FRAMEBUFFER_BINDING);
+            final var previousViewport = new int[4];
+            GL11.glGetIntegerv(GL11.GL_VIEWPORT, previousViewport);
+
+            final var framebuffer = this.framebuffer;
+            ScissorStack.drawUnclipped(() -> framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC));
+            framebuffer.beginWrite(false);
+
+            // the subtree is rendered without the clipping of its ancestors, the composite is clipped instead
+            ScissorStack.drawIsolated(() -> this.owner.draw(matrices, mouseX, mouseY, partialTicks, delta));
+
+            GlStateManager._glBindFramebuffer(GL30.GL_FRAMEBUFFER, previousFramebuffer);
+            RenderSystem.viewport(previousViewport[0], previousViewport[1], previousViewport[2], previousViewport[3]);
+        } else {
+            this.hits++;
+        }
+
+        this.composite(window.getFramebufferWidth() / window.getScaleFactor(), window.getFramebufferHeight() / window.getScaleFactor());
+    }
+
+    private void composite(double width, double height) {
+        final boolean depthTest = GL11.glIsEnabled(GL11.GL_DEPTH_TEST);
+
+        RenderSystem.disableDepthTest();
+        RenderSystem.enableBlend();
+        RenderSystem.blendFunc(GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+
+        RenderSystem.setShader(GameRenderer::getPositionTexShader);
+        RenderSystem.setShaderTexture(0, this.framebuffer.getColorAttachment());
+
+        var buffer = Tessellator.getInstance().getBuffer();
+        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+        buffer.vertex(0, height, 0).texture(0, 0).next();
+        buffer.vertex(width, height, 0).texture(1, 0).next();
+        buffer.vertex(width, 0, 0).texture(1, 1).next();
+        buffer.vertex(0, 0, 0).texture(0, 1).next();
+        Tessellator.getInstance().draw();
+
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.disableBlend();
+        if (depthTest) RenderSystem.enableDepthTest();
+    }
+
+    private boolean hasFocusedDescendant() {
+        final var focusHandler = this.owner.focusHandler();
+        if (focusHandler == null) return false;
+
+        Component current = focusHandler.focused();
+        while (current != null) {
+            if (current == this.owner) return true;
+            current = current.parent();
+        }
+
+        return false;
+    }
+
+    /**
+     * @return How often the cached output of the subtree was reused
+     */
+    public long hits() {
+        return this.hits;
+    }
+
+    /**
+     * @return How often the subtree had to be drawn
+     */
+    public long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Release the framebuffer of this cache - it is
+     * recreated if the cache is drawn again
+     */
+    public void dispose() {
+        if (this.framebuffer == null) return;
+
+        this.framebuffer.delete();
+        this.framebuffer = null;
+        this.dirty = true;
+    }
+}
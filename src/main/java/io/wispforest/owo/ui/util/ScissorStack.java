@@ -83,6 +83,24 @@ public class ScissorStack {
         if (scissorEnabled) GlStateManager._enableScissorTest();
     }
 
+    /**
+     * Run the given action with an empty scissor stack, so that
+     * nothing is clipped except by frames the action pushes itself
+     */
+    public static void drawIsolated(Runnable action) {
+        var previousFrames = new ArrayList<>(STACK);
+        STACK.clear();
+        applyState();
+
+        try {
+            action.run();
+        } finally {
+            STACK.clear();
+            previousFrames.forEach(STACK::addLast);
+            applyState();
+        }
+    }
+
     public static void popFramesAndDraw(int maxPopFrames, Runnable action) {
         var previousFrames = new ArrayList<PositionedRectangle>();
         while (maxPopFrames > 1 && STACK.size() > 1) {